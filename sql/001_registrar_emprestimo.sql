@@ -0,0 +1,29 @@
+-- Checkout em uma única chamada (usado por dao.EmprestimoProcedure).
+-- Não abre transação: quem chama controla o commit.
+-- p_id: id do empréstimo criado, -1 = livro não encontrado, -2 = livro já emprestado.
+
+DROP PROCEDURE IF EXISTS registrar_emprestimo;
+
+DELIMITER //
+CREATE PROCEDURE registrar_emprestimo(
+    IN  p_livro    INT,
+    IN  p_usuario  INT,
+    IN  p_data_emp DATE,
+    IN  p_data_dev DATE,
+    OUT p_id       INT)
+BEGIN
+    UPDATE livros SET disponivel = 0 WHERE id = p_livro AND disponivel = 1;
+
+    IF ROW_COUNT() = 0 THEN
+        IF EXISTS (SELECT 1 FROM livros WHERE id = p_livro) THEN
+            SET p_id = -2;
+        ELSE
+            SET p_id = -1;
+        END IF;
+    ELSE
+        INSERT INTO emprestimos (id_livro, id_usuario, data_emprestimo, data_devolucao)
+        VALUES (p_livro, p_usuario, p_data_emp, p_data_dev);
+        SET p_id = LAST_INSERT_ID();
+    END IF;
+END //
+DELIMITER ;
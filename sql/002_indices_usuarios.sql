@@ -0,0 +1,6 @@
+-- Caminhos de acesso usados por dao.UsuarioDAO.
+-- buscarPorEmail: igualdade em chave única.
+-- buscarPorPrefixoNome: LIKE 'prefixo%' percorre uma faixa do índice de nome.
+
+CREATE UNIQUE INDEX uk_usuarios_email ON usuarios (email);
+CREATE INDEX idx_usuarios_nome ON usuarios (nome);
@@ -0,0 +1,5 @@
+-- Filtros de EmprestimoDAO.listarDetalhado por usuário e por livro.
+-- (coluna, id) deixa o ORDER BY id DESC + LIMIT ser resolvido pelo próprio índice.
+
+CREATE INDEX idx_emprestimos_usuario ON emprestimos (id_usuario, id);
+CREATE INDEX idx_emprestimos_livro ON emprestimos (id_livro, id);
@@ -0,0 +1,4 @@
+-- Varredura incremental de atrasos (dao.MonitorAtrasos):
+-- WHERE data_devolucao >= marca AND data_devolucao < hoje lê só a faixa nova do índice.
+
+CREATE INDEX idx_emprestimos_devolucao ON emprestimos (data_devolucao, id);
@@ -0,0 +1,16 @@
+-- Devolução sem apagar histórico (dao.EmprestimoDAO.devolver / devolverLote).
+-- data_retorno NULL = empréstimo aberto (livro ainda com o usuário).
+--
+-- MySQL não tem índice parcial (WHERE data_retorno IS NULL); o equivalente é pôr data_retorno
+-- na frente do índice: os abertos ficam todos juntos no início e as consultas de abertos
+-- (atrasos, empréstimos do usuário/livro) leem só essa faixa, sem passar pelo histórico.
+
+ALTER TABLE emprestimos ADD COLUMN data_retorno DATE NULL;
+
+-- Varredura de atrasos do MonitorAtrasos: data_retorno IS NULL AND data_devolucao < ?
+DROP INDEX idx_emprestimos_devolucao ON emprestimos;
+CREATE INDEX idx_emprestimos_devolucao ON emprestimos (data_retorno, data_devolucao, id);
+
+-- Empréstimos abertos por usuário e por livro (listarDetalhado com somenteAbertos/somenteAtrasados)
+CREATE INDEX idx_emprestimos_usuario_abertos ON emprestimos (id_usuario, data_retorno, id);
+CREATE INDEX idx_emprestimos_livro_abertos ON emprestimos (id_livro, data_retorno, id);
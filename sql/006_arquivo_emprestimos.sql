@@ -0,0 +1,17 @@
+-- Arquivo de empréstimos devolvidos há muito tempo (dao.ArquivadorEmprestimos).
+-- Mesma estrutura e índices de emprestimos (LIKE não copia as chaves estrangeiras).
+
+CREATE TABLE emprestimos_arquivo LIKE emprestimos;
+
+-- Checkpoint do arquivamento: último id tratado na passada atual e o maior corte já usado
+-- (todo empréstimo arquivado foi devolvido antes de corte).
+CREATE TABLE arquivamento_emprestimos (
+    id        TINYINT PRIMARY KEY,
+    ultimo_id INT NOT NULL DEFAULT 0,
+    corte     DATE NULL
+);
+INSERT INTO arquivamento_emprestimos (id, ultimo_id, corte) VALUES (1, 0, NULL);
+
+-- EmprestimoDAO.listarPorPeriodo nas duas tabelas
+CREATE INDEX idx_emprestimos_data ON emprestimos (data_emprestimo, id);
+CREATE INDEX idx_emprestimos_arquivo_data ON emprestimos_arquivo (data_emprestimo, id);
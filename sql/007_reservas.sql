@@ -0,0 +1,16 @@
+-- Fila de reservas por livro (dao.ReservaDAO).
+-- Quem está na fila recebe o livro direto na transação que o libera (EmprestimoDAO), em ordem de id.
+-- A linha sai da fila quando vira empréstimo ou é cancelada.
+
+CREATE TABLE reservas (
+    id         INT AUTO_INCREMENT PRIMARY KEY,
+    id_livro   INT NOT NULL,
+    id_usuario INT NOT NULL,
+    criada_em  DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_reservas_livro_usuario (id_livro, id_usuario),
+    -- próximo da fila (ORDER BY id LIMIT 1) e posição (COUNT(*) ... id <= ?) lidos só pelo índice
+    KEY idx_reservas_fila (id_livro, id),
+    KEY idx_reservas_usuario (id_usuario),
+    CONSTRAINT fk_reservas_livro FOREIGN KEY (id_livro) REFERENCES livros (id) ON DELETE CASCADE,
+    CONSTRAINT fk_reservas_usuario FOREIGN KEY (id_usuario) REFERENCES usuarios (id) ON DELETE CASCADE
+);
@@ -0,0 +1,15 @@
+-- Outbox de eventos de empréstimo (dao.EventosEmprestimo grava, dao.PublicadorEventos entrega).
+-- Cada mudança em emprestimos grava uma linha aqui na mesma transação; publicado_em NULL = pendente.
+
+CREATE TABLE emprestimo_eventos (
+    id             BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tipo           VARCHAR(10) NOT NULL,
+    id_emprestimo  INT NOT NULL,
+    id_livro       INT NOT NULL,
+    id_usuario     INT NOT NULL,
+    data_devolucao DATE NULL,
+    criado_em      DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    publicado_em   DATETIME(3) NULL,
+    -- pendentes em ordem (WHERE publicado_em IS NULL ORDER BY id) e limpeza dos publicados antigos
+    KEY idx_eventos_pendentes (publicado_em, id)
+);
@@ -0,0 +1,11 @@
+-- Chaves de idempotência de EmprestimoDAO.salvar(e, chave).
+-- A chave primária é a própria chave: o pedido repetido acha o original numa busca só,
+-- e dois pedidos simultâneos com a mesma chave se enfileiram nela.
+
+CREATE TABLE emprestimo_chaves (
+    chave         VARCHAR(64) PRIMARY KEY,
+    id_emprestimo INT NOT NULL,
+    criada_em     DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    -- expirarChaves(...): DELETE ... WHERE criada_em < ? ORDER BY criada_em LIMIT ?
+    KEY idx_emprestimo_chaves_criada (criada_em)
+);
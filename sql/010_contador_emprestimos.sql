@@ -0,0 +1,10 @@
+-- Contador de empréstimos abertos por usuário (dao.UsuarioDAO / EmprestimoDAO).
+-- Mantido na mesma transação de cada empréstimo, devolução e exclusão; o limite é conferido com
+-- UPDATE ... WHERE emprestimos_abertos < limite, sem COUNT(*) em emprestimos.
+
+ALTER TABLE usuarios ADD COLUMN emprestimos_abertos INT NOT NULL DEFAULT 0;
+
+-- Carga inicial (depois, UsuarioDAO.recalcularEmprestimosAbertos() corrige desvios em faixas paralelas)
+UPDATE usuarios u
+SET emprestimos_abertos = (SELECT COUNT(*) FROM emprestimos e
+                           WHERE e.id_usuario = u.id AND e.data_retorno IS NULL);
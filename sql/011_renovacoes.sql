@@ -0,0 +1,8 @@
+-- Renovação de empréstimos em lote (dao.EmprestimoDAO.renovar / renovarDoUsuario).
+-- renovacoes conta quantas vezes o prazo foi estendido; o limite (EmprestimoDAO.MAX_RENOVACOES)
+-- é conferido no próprio UPDATE: ... WHERE renovacoes < ?.
+
+ALTER TABLE emprestimos ADD COLUMN renovacoes INT NOT NULL DEFAULT 0;
+
+-- O arquivo guarda a mesma linha (ArquivadorEmprestimos copia a coluna junto)
+ALTER TABLE emprestimos_arquivo ADD COLUMN renovacoes INT NOT NULL DEFAULT 0;
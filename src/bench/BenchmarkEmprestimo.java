@@ -0,0 +1,192 @@
+package bench;
+
+import dao.EmprestimoCondicional;
+import dao.EmprestimoDAO;
+import dao.EmprestimoPessimista;
+import dao.EmprestimoProcedure;
+import dao.EstrategiaEmprestimo;
+import database.Database;
+import model.Emprestimo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Disputa pelo MESMO livro entre várias threads, para comparar as estratégias de checkout.
+ *
+ * Cada thread repete: tenta emprestar o livro; se conseguir, confere que só existe um empréstimo
+ * aberto para ele e devolve (deleta o empréstimo) para a disputa continuar.
+ * Ao final mostra tentativas/s, empréstimos/s, p50/p99 da tentativa e violações de invariante.
+ *
+ * Uso: java bench.BenchmarkEmprestimo <idLivro> <idUsuario> [threads=16] [segundos=10]
+ * O livro e o usuário precisam existir; para EmprestimoProcedure rode antes sql/001_registrar_emprestimo.sql.
+ * As travas em memória do EmprestimoDAO ficam desligadas aqui: com elas as threads fariam fila na
+ * JVM antes de chegar ao banco e o bench mediria a trava, não a estratégia.
+ */
+public class BenchmarkEmprestimo {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Uso: BenchmarkEmprestimo <idLivro> <idUsuario> [threads] [segundos]");
+            return;
+        }
+        int livroId   = Integer.parseInt(args[0]);
+        int usuarioId = Integer.parseInt(args[1]);
+        int threads   = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int segundos  = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        Database.configuracaoPool().setTamanhoMaximo(Math.max(threads + 2, 10));
+        EmprestimoDAO.setTravasEmMemoria(false);
+
+        Map<String, EstrategiaEmprestimo> estrategias = new LinkedHashMap<>();
+        estrategias.put("pessimista", new EmprestimoPessimista());
+        estrategias.put("condicional", new EmprestimoCondicional());
+        estrategias.put("procedure", new EmprestimoProcedure());
+
+        System.out.printf("livro=%d usuario=%d threads=%d duracao=%ds%n", livroId, usuarioId, threads, segundos);
+        System.out.printf("%-12s %12s %12s %10s %10s %10s %8s%n",
+                "estrategia", "tentativas/s", "emprest./s", "p50(ms)", "p99(ms)", "erros", "violac.");
+
+        for (Map.Entry<String, EstrategiaEmprestimo> en : estrategias.entrySet()) {
+            liberar(livroId);
+            Resultado r = rodar(new EmprestimoDAO(en.getValue()), livroId, usuarioId, threads, segundos);
+            System.out.printf("%-12s %12.1f %12.1f %10.2f %10.2f %10d %8d%n",
+                    en.getKey(), r.tentativas / (double) segundos, r.sucessos / (double) segundos,
+                    r.percentil(0.50), r.percentil(0.99), r.erros, r.violacoes);
+        }
+        liberar(livroId);
+        System.out.println(Database.estatisticasPool());
+        Database.fecharPool();
+    }
+
+    private static Resultado rodar(EmprestimoDAO dao, int livroId, int usuarioId, int threads, int segundos)
+            throws InterruptedException {
+        Resultado r = new Resultado();
+        AtomicInteger donos = new AtomicInteger();
+        AtomicLong tentativas = new AtomicLong();
+        AtomicLong sucessos = new AtomicLong();
+        AtomicLong erros = new AtomicLong();
+        AtomicLong violacoes = new AtomicLong();
+        List<long[]> latencias = new ArrayList<>();
+        long fim = System.nanoTime() + segundos * 1_000_000_000L;
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> lista = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            long[][] minhas = {new long[1024]};
+            int[] n = {0};
+            Thread th = new Thread(() -> {
+                try {
+                    largada.await();
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                while (System.nanoTime() < fim) {
+                    Emprestimo e = new Emprestimo(0, livroId, usuarioId, LocalDate.now(), LocalDate.now().plusDays(7));
+                    long ini = System.nanoTime();
+                    boolean ok;
+                    try {
+                        dao.salvar(e);
+                        ok = true;
+                    } catch (RuntimeException ex) {
+                        ok = false;
+                        if (!(ex.getMessage() != null && ex.getMessage().contains("já está emprestado"))) {
+                            erros.incrementAndGet();
+                        }
+                    }
+                    long dur = System.nanoTime() - ini;
+                    if (n[0] == minhas[0].length) minhas[0] = Arrays.copyOf(minhas[0], n[0] * 2);
+                    minhas[0][n[0]++] = dur;
+                    tentativas.incrementAndGet();
+
+                    if (ok) {
+                        sucessos.incrementAndGet();
+                        if (donos.incrementAndGet() > 1 || emprestimosAbertos(livroId) > 1) {
+                            violacoes.incrementAndGet();
+                        }
+                        donos.decrementAndGet();
+                        try {
+                            dao.deletar(e.getId());
+                        } catch (RuntimeException ex) {
+                            erros.incrementAndGet();
+                        }
+                    }
+                }
+                synchronized (latencias) {
+                    latencias.add(Arrays.copyOf(minhas[0], n[0]));
+                }
+            }, "bench-" + t);
+            lista.add(th);
+            th.start();
+        }
+        largada.countDown();
+        for (Thread th : lista) th.join();
+
+        r.tentativas = tentativas.get();
+        r.sucessos = sucessos.get();
+        r.erros = erros.get();
+        r.violacoes = violacoes.get();
+        int total = 0;
+        for (long[] l : latencias) total += l.length;
+        r.latencias = new long[total];
+        int pos = 0;
+        for (long[] l : latencias) {
+            System.arraycopy(l, 0, r.latencias, pos, l.length);
+            pos += l.length;
+        }
+        Arrays.sort(r.latencias);
+        return r;
+    }
+
+    private static int emprestimosAbertos(int livroId) {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM emprestimos WHERE id_livro = ? AND data_retorno IS NULL")) {
+            ps.setInt(1, livroId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao contar empréstimos: " + ex.getMessage(), ex);
+        }
+    }
+
+    // Começa cada rodada com o livro livre e sem empréstimos
+    private static void liberar(int livroId) throws SQLException {
+        try (Connection conn = Database.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM emprestimos WHERE id_livro = ?")) {
+                ps.setInt(1, livroId);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE livros SET disponivel = 1 WHERE id = ?")) {
+                ps.setInt(1, livroId);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static class Resultado {
+        long tentativas;
+        long sucessos;
+        long erros;
+        long violacoes;
+        long[] latencias = new long[0];
+
+        double percentil(double p) {
+            if (latencias.length == 0) return 0;
+            int i = (int) Math.ceil(p * latencias.length) - 1;
+            return latencias[Math.max(0, i)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package bench;
+
+import dao.EmprestimoDAO;
+import dao.LeituraStream;
+import database.Database;
+import model.Emprestimo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * Confere que a leitura em streaming (LeituraStream / EmprestimoDAO.stream) roda em memória limitada.
+ *
+ * Lê um resultado grande linha a linha, montando um Emprestimo por linha e guardando só uma soma,
+ * e no fim mostra linhas/s e o pico de heap. Rode com -Xmx pequeno: se o driver materializasse o
+ * resultado, a leitura morreria com OutOfMemoryError muito antes do fim.
+ *
+ * Uso: java -Xmx64m bench.MemoriaLeituraStream [linhas=5000000]
+ *      java -Xmx64m bench.MemoriaLeituraStream tabela     (EmprestimoDAO.stream() sobre a tabela real)
+ * O modo padrão gera as linhas no próprio MySQL (produto cartesiano de dígitos, até 10 milhões),
+ * sem tocar em nenhuma tabela.
+ */
+public class MemoriaLeituraStream {
+
+    public static void main(String[] args) {
+        boolean tabela = args.length > 0 && args[0].equals("tabela");
+        long linhas = !tabela && args.length > 0 ? Long.parseLong(args[0]) : 5_000_000;
+        if (linhas < 1 || linhas > 10_000_000) {
+            System.out.println("linhas deve ficar entre 1 e 10000000");
+            return;
+        }
+
+        System.gc();
+        for (MemoryPoolMXBean p : areasDoHeap()) p.resetPeakUsage();
+        long inicio = System.nanoTime();
+        long[] lidas = {0};
+        long[] soma = {0};
+
+        try (Stream<Emprestimo> s = tabela ? new EmprestimoDAO().stream() : sintetico(linhas)) {
+            s.forEach(e -> {
+                lidas[0]++;
+                soma[0] += e.getId() + e.getLivroId() + e.getDataDevolucao().getDayOfMonth();
+            });
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        long maxMb = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+        System.out.printf("fonte=%s linhas=%d tempo=%.1fs linhas/s=%.0f soma=%d%n",
+                tabela ? "emprestimos" : "sintetica", lidas[0], segundos, lidas[0] / segundos, soma[0]);
+        System.out.printf("pico de heap=%.1f MB (limite -Xmx=%d MB)%n", picoHeap() / (1024.0 * 1024.0), maxMb);
+        Database.fecharPool();
+    }
+
+    // Mesmas colunas de emprestimos, geradas no servidor
+    private static Stream<Emprestimo> sintetico(long linhas) {
+        String sql = "WITH dez AS (SELECT 0 d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 "
+                + "UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9), "
+                + "seq AS (SELECT a.d + 10 * b.d + 100 * c.d + 1000 * d.d + 10000 * e.d + 100000 * f.d + 1000000 * g.d + 1 AS n "
+                + "FROM dez a, dez b, dez c, dez d, dez e, dez f, dez g) "
+                + "SELECT n AS id, n % 5000 + 1 AS id_livro, n % 800 + 1 AS id_usuario, "
+                + "DATE '2024-01-01' + INTERVAL (n % 365) DAY AS data_emprestimo, "
+                + "DATE '2024-01-15' + INTERVAL (n % 365) DAY AS data_devolucao, "
+                + "CAST(NULL AS DATE) AS data_retorno "
+                + "FROM seq LIMIT " + linhas;
+        return LeituraStream.abrir(sql, rs -> new Emprestimo(
+                rs.getInt("id"),
+                rs.getInt("id_livro"),
+                rs.getInt("id_usuario"),
+                rs.getDate("data_emprestimo").toLocalDate(),
+                rs.getDate("data_devolucao").toLocalDate(),
+                null));
+    }
+
+    // Soma dos picos de cada área do heap (limite superior do pico real: as áreas não chegam ao máximo juntas)
+    private static long picoHeap() {
+        long total = 0;
+        for (MemoryPoolMXBean p : areasDoHeap()) total += p.getPeakUsage().getUsed();
+        return total;
+    }
+
+    private static List<MemoryPoolMXBean> areasDoHeap() {
+        List<MemoryPoolMXBean> areas = new ArrayList<>();
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (p.getType() == MemoryType.HEAP) areas.add(p);
+        }
+        return areas;
+    }
+}
@@ -0,0 +1,224 @@
+package dao;
+
+import database.Database;
+import database.Transacao;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Move empréstimos devolvidos há mais de diasRetencao dias de emprestimos para emprestimos_arquivo
+ * (sql/006_arquivo_emprestimos.sql), para a tabela principal ficar do tamanho do movimento recente.
+ *
+ * - Anda pela chave primária em blocos de tamanhoBloco ids: cada bloco é uma transação curta
+ *   (INSERT ... SELECT + DELETE + checkpoint), então as travas duram só o tempo de um bloco.
+ * - O checkpoint (último id tratado) é gravado no mesmo commit do bloco: se o processo cair,
+ *   a próxima execução continua de onde parou, sem copiar nada em dobro.
+ * - Entre um bloco e outro espera pausaMs, para não disputar I/O com o balcão.
+ * - getHorizonte(): todo empréstimo arquivado foi devolvido antes desta data. EmprestimoDAO usa
+ *   para só consultar o arquivo quando o período pedido começa antes dela. É lido do banco a cada
+ *   chamada (uma linha pela chave primária): outro processo pode ter avançado o corte.
+ */
+public class ArquivadorEmprestimos {
+    private static final Logger LOG = Logger.getLogger(ArquivadorEmprestimos.class.getName());
+    private static final ArquivadorEmprestimos INSTANCIA = new ArquivadorEmprestimos();
+    private static final String COLUNAS = "id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno, renovacoes";
+
+    private volatile int tamanhoBloco = 500;
+    private volatile long pausaMs = 200;
+    private volatile int diasRetencao = 365;
+
+    private final AtomicLong totalArquivados = new AtomicLong();
+    private volatile boolean interromper;
+    private ScheduledExecutorService agendador;
+
+    public static ArquivadorEmprestimos instancia() {
+        return INSTANCIA;
+    }
+
+    // ---------- Configuração ----------
+    public ArquivadorEmprestimos setTamanhoBloco(int tamanhoBloco) {
+        if (tamanhoBloco < 1 || tamanhoBloco > ConsultaEmLote.TAMANHO_BLOCO) {
+            throw new IllegalArgumentException("Tamanho de bloco deve ficar entre 1 e " + ConsultaEmLote.TAMANHO_BLOCO + ".");
+        }
+        this.tamanhoBloco = tamanhoBloco;
+        return this;
+    }
+
+    public ArquivadorEmprestimos setPausaMs(long pausaMs) { this.pausaMs = pausaMs; return this; }
+    public ArquivadorEmprestimos setDiasRetencao(int diasRetencao) { this.diasRetencao = diasRetencao; return this; }
+
+    // ---------- Execução ----------
+    // Arquiva o que foi devolvido antes de hoje - diasRetencao
+    public long arquivar() {
+        return arquivar(LocalDate.now().minusDays(diasRetencao));
+    }
+
+    // Arquiva devolvidos antes de corte; retorna quantos empréstimos foram movidos nesta chamada
+    public synchronized long arquivar(LocalDate corte) {
+        interromper = false;
+        avancarHorizonte(corte); // antes do primeiro bloco: leitores passam a olhar o arquivo já
+        long movidos = 0;
+        int ultimoId = lerCheckpoint();
+        while (!interromper) {
+            List<Integer> ids = candidatos(ultimoId, corte);
+            if (ids.isEmpty()) {
+                gravarCheckpoint(0); // passada completa: a próxima começa do início
+                break;
+            }
+            movidos += moverBloco(ids, corte);
+            ultimoId = ids.get(ids.size() - 1);
+            if (pausaMs > 0) {
+                try {
+                    Thread.sleep(pausaMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        totalArquivados.addAndGet(movidos);
+        return movidos;
+    }
+
+    public synchronized void iniciar(long intervaloMs) {
+        if (agendador != null) return;
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "arquivador-emprestimos");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                long n = arquivar();
+                if (n > 0) LOG.info("Empréstimos arquivados: " + n);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Falha ao arquivar empréstimos", e);
+            }
+        }, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Para depois do bloco em andamento (o checkpoint garante a continuação)
+    public void parar() {
+        interromper = true;
+        synchronized (this) {
+            if (agendador != null) {
+                agendador.shutdownNow();
+                agendador = null;
+            }
+        }
+    }
+
+    // ---------- Consultas ----------
+    // null = nada arquivado ainda
+    public LocalDate getHorizonte() {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT corte FROM arquivamento_emprestimos WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            Date d = rs.next() ? rs.getDate(1) : null;
+            return d == null ? null : d.toLocalDate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao ler corte do arquivamento: " + e.getMessage(), e);
+        }
+    }
+
+    public long getTotalArquivados() { return totalArquivados.get(); }
+
+    // ---------- Interno ----------
+    // Leitura sem trava: os ids são conferidos de novo dentro da transação do bloco
+    private List<Integer> candidatos(int aposId, LocalDate corte) {
+        String sql = "SELECT id FROM emprestimos WHERE id > ? AND data_retorno < ? ORDER BY id LIMIT ?";
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, aposId);
+            ps.setDate(2, Date.valueOf(corte));
+            ps.setInt(3, tamanhoBloco);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao ler empréstimos para arquivar: " + e.getMessage(), e);
+        }
+        return ids;
+    }
+
+    private int moverBloco(List<Integer> ids, LocalDate corte) {
+        String filtro = " WHERE id IN (" + Sql.marcadores(ids.size()) + ") AND data_retorno < ?";
+        String sqlCopiar = "INSERT INTO emprestimos_arquivo (" + COLUNAS + ") SELECT " + COLUNAS + " FROM emprestimos" + filtro;
+        String sqlApagar = "DELETE FROM emprestimos" + filtro;
+        try {
+            return Transacao.executarComRetentativa("ArquivadorEmprestimos.moverBloco", conn -> {
+                int copiados;
+                try (PreparedStatement ps = conn.prepareStatement(sqlCopiar)) {
+                    preencher(ps, ids, corte);
+                    copiados = ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(sqlApagar)) {
+                    preencher(ps, ids, corte);
+                    ps.executeUpdate();
+                }
+                gravarCheckpoint(conn, ids.get(ids.size() - 1));
+                return copiados;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao arquivar empréstimos: " + e.getMessage(), e);
+        }
+    }
+
+    private static void preencher(PreparedStatement ps, List<Integer> ids, LocalDate corte) throws SQLException {
+        int p = 1;
+        for (int id : ids) ps.setInt(p++, id);
+        ps.setDate(p, Date.valueOf(corte));
+    }
+
+    private int lerCheckpoint() {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT ultimo_id FROM arquivamento_emprestimos WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao ler checkpoint do arquivamento: " + e.getMessage(), e);
+        }
+    }
+
+    private void gravarCheckpoint(int ultimoId) {
+        try (Connection conn = Database.getConnection()) {
+            gravarCheckpoint(conn, ultimoId);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao gravar checkpoint do arquivamento: " + e.getMessage(), e);
+        }
+    }
+
+    private static void gravarCheckpoint(Connection conn, int ultimoId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE arquivamento_emprestimos SET ultimo_id = ? WHERE id = 1")) {
+            ps.setInt(1, ultimoId);
+            ps.executeUpdate();
+        }
+    }
+
+    // O horizonte só avança: cortes menores que o já usado não tiram nada do arquivo
+    private void avancarHorizonte(LocalDate corte) {
+        String sql = "UPDATE arquivamento_emprestimos SET corte = ? WHERE id = 1 AND (corte IS NULL OR corte < ?)";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, Date.valueOf(corte));
+            ps.setDate(2, Date.valueOf(corte));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao gravar corte do arquivamento: " + e.getMessage(), e);
+        }
+    }
+}
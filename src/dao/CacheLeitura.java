@@ -0,0 +1,227 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * Cache de leitura limitado, com admissão por frequência (no estilo W-TinyLFU):
+ *
+ * - Toda chave nova entra numa "janela" LRU pequena (~1% da capacidade).
+ * - Quem sai da janela disputa a vaga com a vítima LRU da área principal; fica quem tiver
+ *   sido pedido mais vezes, segundo um count-min sketch que é reduzido à metade periodicamente.
+ *   Assim uma varredura de livros consultados uma única vez não expulsa os títulos populares.
+ * - TTL opcional (0 = sem expiração).
+ * - invalidar()/limpar() descartam entradas; uma carga que estava em andamento durante a
+ *   invalidação não é gravada (evita recolocar o valor antigo no cache).
+ */
+public class CacheLeitura<K, V> {
+    private final int capacidade;
+    private final int capacidadeJanela;
+    private final long ttlMs;
+
+    private final LinkedHashMap<K, Entrada<V>> janela = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entrada<V>> principal = new LinkedHashMap<>(16, 0.75f, true);
+    private final Sketch frequencia;
+    private long geracao;
+
+    private long acertos;
+    private long faltas;
+    private long despejos;
+
+    public CacheLeitura(int capacidade, long ttlMs) {
+        if (capacidade < 2) throw new IllegalArgumentException("Capacidade mínima é 2.");
+        this.capacidade = capacidade;
+        this.capacidadeJanela = Math.max(1, capacidade / 100);
+        this.ttlMs = ttlMs;
+        this.frequencia = new Sketch(capacidade);
+    }
+
+    // Leitura com carga sob demanda; valores null não são guardados
+    public V obter(K chave, Function<K, V> carregar) {
+        long geracaoInicial;
+        synchronized (this) {
+            frequencia.incrementar(chave);
+            Entrada<V> e = janela.get(chave);
+            if (e == null) e = principal.get(chave);
+            if (e != null && !expirada(e)) {
+                acertos++;
+                return e.valor;
+            }
+            if (e != null) remover(chave);
+            faltas++;
+            geracaoInicial = geracao;
+        }
+
+        V valor = carregar.apply(chave);
+        if (valor == null) return null;
+
+        synchronized (this) {
+            if (geracao == geracaoInicial && !janela.containsKey(chave) && !principal.containsKey(chave)) {
+                inserir(chave, valor);
+            }
+        }
+        return valor;
+    }
+
+    // Leitura de várias chaves: o que faltar é carregado de uma vez por carregarFaltantes
+    public Map<K, V> obterTodos(Collection<K> chaves, Function<Collection<K>, Map<K, V>> carregarFaltantes) {
+        Map<K, V> encontrados = new HashMap<>();
+        List<K> faltantes = new ArrayList<>();
+        long geracaoInicial;
+        synchronized (this) {
+            for (K chave : chaves) {
+                frequencia.incrementar(chave);
+                Entrada<V> e = janela.get(chave);
+                if (e == null) e = principal.get(chave);
+                if (e != null && !expirada(e)) {
+                    acertos++;
+                    encontrados.put(chave, e.valor);
+                } else {
+                    if (e != null) remover(chave);
+                    faltas++;
+                    faltantes.add(chave);
+                }
+            }
+            geracaoInicial = geracao;
+        }
+        if (faltantes.isEmpty()) return encontrados;
+
+        Map<K, V> carregados = carregarFaltantes.apply(faltantes);
+        synchronized (this) {
+            for (Map.Entry<K, V> en : carregados.entrySet()) {
+                if (en.getValue() == null) continue;
+                encontrados.put(en.getKey(), en.getValue());
+                if (geracao == geracaoInicial && !janela.containsKey(en.getKey()) && !principal.containsKey(en.getKey())) {
+                    inserir(en.getKey(), en.getValue());
+                }
+            }
+        }
+        return encontrados;
+    }
+
+    public synchronized void invalidar(K chave) {
+        geracao++;
+        remover(chave);
+    }
+
+    public synchronized void limpar() {
+        geracao++;
+        janela.clear();
+        principal.clear();
+    }
+
+    private void remover(K chave) {
+        if (janela.remove(chave) == null) principal.remove(chave);
+    }
+
+    private boolean expirada(Entrada<V> e) {
+        return ttlMs > 0 && System.currentTimeMillis() > e.expiraEm;
+    }
+
+    private void inserir(K chave, V valor) {
+        long expira = ttlMs > 0 ? System.currentTimeMillis() + ttlMs : Long.MAX_VALUE;
+        janela.put(chave, new Entrada<>(valor, expira));
+        if (janela.size() <= capacidadeJanela) return;
+
+        // Candidato: o mais antigo da janela
+        Map.Entry<K, Entrada<V>> candidato = janela.entrySet().iterator().next();
+        janela.remove(candidato.getKey());
+
+        int capacidadePrincipal = capacidade - capacidadeJanela;
+        if (principal.size() < capacidadePrincipal) {
+            principal.put(candidato.getKey(), candidato.getValue());
+            return;
+        }
+
+        Map.Entry<K, Entrada<V>> vitima = principal.entrySet().iterator().next();
+        despejos++;
+        if (frequencia.estimar(candidato.getKey()) > frequencia.estimar(vitima.getKey())) {
+            principal.remove(vitima.getKey());
+            principal.put(candidato.getKey(), candidato.getValue());
+        }
+        // senão o candidato é que sai
+    }
+
+    // ---------- Métricas ----------
+    public synchronized long getAcertos() { return acertos; }
+    public synchronized long getFaltas() { return faltas; }
+    public synchronized long getDespejos() { return despejos; }
+    public synchronized int getTamanho() { return janela.size() + principal.size(); }
+
+    public synchronized double getTaxaAcerto() {
+        long total = acertos + faltas;
+        return total == 0 ? 0 : acertos / (double) total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("cache[tamanho=%d/%d, acertos=%d, faltas=%d, taxa=%.1f%%, despejos=%d]",
+                getTamanho(), capacidade, acertos, faltas, getTaxaAcerto() * 100, despejos);
+    }
+
+    private static final class Entrada<V> {
+        final V valor;
+        final long expiraEm;
+
+        Entrada(V valor, long expiraEm) {
+            this.valor = valor;
+            this.expiraEm = expiraEm;
+        }
+    }
+
+    /*
+     * Count-min sketch com 4 linhas e contadores saturando em 15.
+     * A cada 10 x capacidade incrementos todos os contadores caem pela metade (envelhecimento).
+     */
+    private static final class Sketch {
+        private static final int LINHAS = 4;
+        private static final int[] SEMENTES = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] contadores;
+        private final int mascara;
+        private final int limiteAmostra;
+        private int amostra;
+
+        Sketch(int capacidade) {
+            int largura = Integer.highestOneBit(Math.max(16, capacidade) * 2 - 1);
+            this.contadores = new byte[LINHAS][largura];
+            this.mascara = largura - 1;
+            this.limiteAmostra = 10 * capacidade;
+        }
+
+        void incrementar(Object chave) {
+            int h = chave.hashCode();
+            for (int i = 0; i < LINHAS; i++) {
+                int pos = indice(h, i);
+                if (contadores[i][pos] < 15) contadores[i][pos]++;
+            }
+            if (++amostra >= limiteAmostra) envelhecer();
+        }
+
+        int estimar(Object chave) {
+            int h = chave.hashCode();
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < LINHAS; i++) {
+                min = Math.min(min, contadores[i][indice(h, i)]);
+            }
+            return min;
+        }
+
+        private int indice(int h, int linha) {
+            int x = (h ^ (h >>> 16)) * SEMENTES[linha];
+            return (x ^ (x >>> 15)) & mascara;
+        }
+
+        private void envelhecer() {
+            for (byte[] linha : contadores) {
+                for (int j = 0; j < linha.length; j++) linha[j] >>= 1;
+            }
+            amostra /= 2;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package dao;
+
+import database.Transacao;
+import model.Emprestimo;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Commit em grupo para picos de empréstimos (início de semestre).
+ *
+ * salvar(e) só enfileira e devolve um CompletableFuture. Uma thread junta o que chegar em até
+ * esperaMaxMs (no máximo tamanhoMaximo pedidos) e grava tudo numa transação só: um commit
+ * (um fsync) para o grupo inteiro em vez de um por pedido.
+ *
+ * - Os pedidos são executados em ordem de id do livro: as travas de livros são sempre pegas na
+ *   mesma ordem (como em salvarLote), então grupos e lotes concorrentes não entram em deadlock.
+ * - Cada pedido roda entre um savepoint e outro: se um falha (ex.: livro já emprestado), só ele é
+ *   desfeito e só o futuro dele falha; os demais seguem no mesmo commit.
+ * - Os futuros só completam depois do commit. Deadlock no grupo refaz o grupo (Transacao.executarComRetentativa);
+ *   se ainda assim a transação do grupo falhar antes do commit, cada pedido é refeito sozinho com
+ *   EmprestimoDAO.salvar. Se a falha for no próprio commit o resultado é desconhecido: o grupo não
+ *   é refeito nem pela retentativa (mesmo que o erro pareça deadlock) e os futuros falham
+ *   (getIncertos) em vez de arriscar empréstimos em dobro.
+ * - Os avisos pós-commit (cache, bitmap, monitor) são os últimos passos de cada pedido, então um
+ *   pedido desfeito pelo savepoint não deixa aviso pendurado.
+ */
+public class CommitEmGrupo implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(CommitEmGrupo.class.getName());
+    private static final Pedido FIM = new Pedido(null); // marca de encerramento na fila
+
+    private final EmprestimoDAO dao;
+    private final long esperaMaxMs;
+    private final int tamanhoMaximo;
+    private final BlockingQueue<Pedido> fila = new LinkedBlockingQueue<>();
+    private final Thread executor;
+    private volatile boolean fechado;
+
+    private final AtomicLong grupos = new AtomicLong();
+    private final AtomicLong pedidos = new AtomicLong();
+    private final AtomicLong refeitosSozinhos = new AtomicLong();
+    private final AtomicLong incertos = new AtomicLong();
+
+    public CommitEmGrupo(EmprestimoDAO dao) {
+        this(dao, 5, 100);
+    }
+
+    public CommitEmGrupo(EmprestimoDAO dao, long esperaMaxMs, int tamanhoMaximo) {
+        this.dao = dao;
+        this.esperaMaxMs = esperaMaxMs;
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.executor = new Thread(this::executar, "commit-em-grupo");
+        this.executor.setDaemon(true);
+        this.executor.start();
+    }
+
+    public CompletableFuture<Emprestimo> salvar(Emprestimo e) {
+        Pedido p = new Pedido(e);
+        if (fechado) {
+            p.futuro.completeExceptionally(new IllegalStateException("Commit em grupo encerrado."));
+            return p.futuro;
+        }
+        try {
+            TravasLivros.recusarSeIndisponivel(e.getLivroId(), EmprestimoDAO.LIVRO_EMPRESTADO); // nem entra na fila
+        } catch (RuntimeException indisponivel) {
+            p.futuro.completeExceptionally(indisponivel);
+            return p.futuro;
+        }
+        fila.add(p);
+        return p.futuro;
+    }
+
+    // Para de aceitar pedidos e espera os que já estão na fila serem gravados
+    @Override
+    public void close() {
+        fechado = true;
+        fila.add(FIM); // sem interrupt: a thread pode estar no meio de um commit
+        try {
+            executor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Algum salvar() que passou pela checagem de fechado depois da última rodada
+        List<Pedido> restantes = new ArrayList<>();
+        fila.drainTo(restantes);
+        restantes.remove(FIM);
+        if (!restantes.isEmpty()) gravar(restantes);
+    }
+
+    // ---------- Métricas ----------
+    public long getGrupos() { return grupos.get(); }
+    public long getPedidos() { return pedidos.get(); }
+    public long getRefeitosSozinhos() { return refeitosSozinhos.get(); }
+    // Pedidos cujo commit falhou sem dar para saber se foi gravado (não são refeitos)
+    public long getIncertos() { return incertos.get(); }
+
+    public double getTamanhoMedioGrupo() {
+        long g = grupos.get();
+        return g == 0 ? 0 : pedidos.get() / (double) g;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("commitEmGrupo[grupos=%d, pedidos=%d, media=%.1f, refeitos=%d, incertos=%d]",
+                grupos.get(), pedidos.get(), getTamanhoMedioGrupo(), refeitosSozinhos.get(), incertos.get());
+    }
+
+    // ---------- Interno ----------
+    private void executar() {
+        boolean fim = false;
+        while (!fim) {
+            List<Pedido> grupo = new ArrayList<>(tamanhoMaximo);
+            try {
+                Pedido p = fila.take();
+                if (p == FIM) return;
+                grupo.add(p);
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaxMs);
+                while (grupo.size() < tamanhoMaximo) {
+                    long resta = limite - System.nanoTime();
+                    if (resta <= 0) break;
+                    p = fila.poll(resta, TimeUnit.NANOSECONDS);
+                    if (p == null) break;
+                    if (p == FIM) {
+                        fim = true; // grava o grupo atual e encerra
+                        break;
+                    }
+                    grupo.add(p);
+                }
+            } catch (InterruptedException e) {
+                fim = true;
+            }
+            if (!grupo.isEmpty()) gravar(grupo);
+        }
+    }
+
+    private void gravar(List<Pedido> grupo) {
+        grupo.sort(Comparator.comparingInt(p -> p.emprestimo.getLivroId())); // ordem estável: chegada dentro do livro
+        grupos.incrementAndGet();
+        pedidos.addAndGet(grupo.size());
+        boolean[] chegouAoCommit = new boolean[1];
+        // Só o trabalho é refeito: falha depois de chegar ao commit (mesmo deadlock/espera) não volta ao laço
+        Transacao.Envolvente semRefazerCommit = new Transacao.Envolvente() {
+            @Override
+            public <T> T executar(Transacao.Tentativa<T> tentativa) throws SQLException {
+                try {
+                    return tentativa.executar();
+                } catch (SQLException | RuntimeException ex) {
+                    if (!chegouAoCommit[0]) throw ex;
+                    SQLException incerto = new SQLException("Commit do grupo sem confirmação: " + ex.getMessage());
+                    incerto.addSuppressed(ex); // fora da cadeia de causas: Transacao.retentavel não o vê
+                    throw incerto;
+                }
+            }
+        };
+        try {
+            Transacao.executarComRetentativa("CommitEmGrupo.gravar", semRefazerCommit, conn -> {
+                chegouAoCommit[0] = false;
+                for (Pedido p : grupo) {
+                    p.erro = null; // nova tentativa do grupo
+                    Savepoint sp = conn.setSavepoint();
+                    try {
+                        dao.registrar(conn, p.emprestimo);
+                        conn.releaseSavepoint(sp);
+                    } catch (RuntimeException | SQLException ex) {
+                        // Deadlock/espera de trava: o InnoDB já desfez a transação inteira (o savepoint
+                        // não existe mais). Isso e falhas de conexão sobem para o grupo ser refeito.
+                        if (!erroDoPedido(ex)) throw ex;
+                        conn.rollback(sp);
+                        p.emprestimo.setId(0); // id gerado antes da falha foi desfeito junto
+                        p.erro = ex;
+                    }
+                }
+                chegouAoCommit[0] = true; // daqui em diante só falta o commit
+                return null;
+            });
+        } catch (SQLException | RuntimeException ex) {
+            if (chegouAoCommit[0]) {
+                // O commit falhou: não dá para saber se foi gravado. Refazer poderia duplicar empréstimos;
+                // o id gerado fica no objeto para quem chamou conferir com buscarPorId.
+                LOG.log(Level.SEVERE, "Commit do grupo de " + grupo.size() + " empréstimos falhou com resultado desconhecido", ex);
+                for (Pedido p : grupo) {
+                    incertos.incrementAndGet();
+                    p.futuro.completeExceptionally(new RuntimeException(
+                            "Resultado do empréstimo desconhecido (falha no commit); confira antes de repetir.", ex));
+                }
+                return;
+            }
+            // O commit nem foi tentado: o grupo inteiro foi desfeito e cada um tenta de novo sozinho
+            LOG.log(Level.WARNING, "Falha no grupo de " + grupo.size() + " empréstimos; refazendo um a um", ex);
+            for (Pedido p : grupo) {
+                refeitosSozinhos.incrementAndGet();
+                p.emprestimo.setId(0); // id da tentativa desfeita
+                try {
+                    dao.salvar(p.emprestimo);
+                    p.futuro.complete(p.emprestimo);
+                } catch (RuntimeException individual) {
+                    p.futuro.completeExceptionally(individual);
+                }
+            }
+            return;
+        }
+        for (Pedido p : grupo) {
+            if (p.erro == null) p.futuro.complete(p.emprestimo);
+            else p.futuro.completeExceptionally(p.erro);
+        }
+    }
+
+    // Regra de negócio (livro emprestado, limite...) ou violação de restrição: falha só deste pedido
+    private static boolean erroDoPedido(Exception ex) {
+        if (Transacao.retentavel(ex)) return false;
+        return ex instanceof RuntimeException || ex instanceof SQLIntegrityConstraintViolationException;
+    }
+
+    private static final class Pedido {
+        final Emprestimo emprestimo;
+        final CompletableFuture<Emprestimo> futuro = new CompletableFuture<>();
+        Exception erro;
+
+        Pedido(Emprestimo emprestimo) {
+            this.emprestimo = emprestimo;
+        }
+    }
+}
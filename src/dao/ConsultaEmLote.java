@@ -0,0 +1,91 @@
+package dao;
+
+import database.Database;
+import database.Transacao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToIntFunction;
+
+/*
+ * Busca de muitos registros por id sem N+1:
+ * - os ids são divididos em listas IN (...) de no máximo TAMANHO_BLOCO;
+ * - com vários blocos, cada um roda em paralelo numa conexão própria do pool;
+ * - dentro de uma Transacao tudo roda em sequência na conexão da transação (para enxergar o que
+ *   ela ainda não confirmou).
+ */
+final class ConsultaEmLote {
+    static final int TAMANHO_BLOCO = 500;
+    private static final int THREADS = 4;
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "consulta-em-lote");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ConsultaEmLote() {}
+
+    /*
+     * sqlComIn deve conter "%s" no lugar dos marcadores, ex.:
+     * "SELECT ... FROM livros WHERE id IN (%s)"
+     */
+    static <T> Map<Integer, T> buscarPorIds(String sqlComIn, Collection<Integer> ids, Mapeador<T> mapeador,
+                                            ToIntFunction<T> id) {
+        List<Integer> distintos = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<Integer>> blocos = new ArrayList<>();
+        for (int i = 0; i < distintos.size(); i += TAMANHO_BLOCO) {
+            blocos.add(distintos.subList(i, Math.min(distintos.size(), i + TAMANHO_BLOCO)));
+        }
+
+        Map<Integer, T> resultado = new HashMap<>();
+        if (blocos.size() <= 1 || Transacao.ativa()) {
+            for (List<Integer> bloco : blocos) resultado.putAll(consultar(sqlComIn, bloco, mapeador, id));
+            return resultado;
+        }
+
+        List<CompletableFuture<Map<Integer, T>>> tarefas = new ArrayList<>();
+        for (List<Integer> bloco : blocos) {
+            tarefas.add(CompletableFuture.supplyAsync(() -> consultar(sqlComIn, bloco, mapeador, id), EXECUTOR));
+        }
+        try {
+            for (CompletableFuture<Map<Integer, T>> t : tarefas) resultado.putAll(t.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return resultado;
+    }
+
+    private static <T> Map<Integer, T> consultar(String sqlComIn, List<Integer> bloco, Mapeador<T> mapeador,
+                                                 ToIntFunction<T> id) {
+        Map<Integer, T> encontrados = new HashMap<>();
+        String sql = String.format(sqlComIn, Sql.marcadores(bloco.size()));
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int valor : bloco) ps.setInt(i++, valor);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    T obj = mapeador.map(rs);
+                    encontrados.put(id.applyAsInt(obj), obj);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro na consulta por ids: " + e.getMessage(), e);
+        }
+        return encontrados;
+    }
+}
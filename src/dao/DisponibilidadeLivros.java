@@ -0,0 +1,231 @@
+package dao;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Espelho em memória de livros.disponivel: dois bitmaps indexados pelo id do livro
+ * (existe / disponível) e um contador de disponíveis.
+ *
+ * - carregar() lê a tabela inteira de uma vez (streaming) e troca os bitmaps.
+ * - LivroDAO e EmprestimoDAO atualizam os bits depois do commit (ver LivroDAO.disponibilidadeAlterada).
+ * - iniciarReconciliacao(...) recarrega periodicamente para corrigir desvios (ex.: alterações feitas
+ *   fora da aplicação); as divergências encontradas ficam em getDivergencias().
+ *
+ * Enquanto não for carregado, estaDisponivel() responde null e quem chama deve ir ao banco.
+ */
+public class DisponibilidadeLivros {
+    private static final Logger LOG = Logger.getLogger(DisponibilidadeLivros.class.getName());
+    private static final DisponibilidadeLivros INSTANCIA = new DisponibilidadeLivros();
+
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+    private long[] existe = new long[0];
+    private long[] disponivel = new long[0];
+    private int disponiveis;
+    private boolean carregado;
+    private Set<Integer> alteradosDuranteCarga; // != null enquanto uma carga está em andamento
+    private long divergencias;
+    private ScheduledExecutorService reconciliacao;
+
+    public static DisponibilidadeLivros instancia() {
+        return INSTANCIA;
+    }
+
+    // ---------- Consultas (sem ida ao banco) ----------
+    public Boolean estaDisponivel(int livroId) {
+        trava.readLock().lock();
+        try {
+            if (!carregado || !ligado(existe, livroId)) return null;
+            return ligado(disponivel, livroId);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    // -1 enquanto não carregado
+    public int contarDisponiveis() {
+        trava.readLock().lock();
+        try {
+            return carregado ? disponiveis : -1;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    public boolean isCarregado() {
+        trava.readLock().lock();
+        try {
+            return carregado;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    public long getDivergencias() {
+        trava.readLock().lock();
+        try {
+            return divergencias;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    // ---------- Atualizações (chamadas após o commit) ----------
+    void definir(int livroId, boolean valor) {
+        if (livroId < 0) return;
+        trava.writeLock().lock();
+        try {
+            if (!carregado && alteradosDuranteCarga == null) return; // nada a espelhar ainda
+            garantirCapacidade(livroId);
+            boolean antes = ligado(existe, livroId) && ligado(disponivel, livroId);
+            ligar(existe, livroId, true);
+            ligar(disponivel, livroId, valor);
+            if (antes != valor) disponiveis += valor ? 1 : -1;
+            if (alteradosDuranteCarga != null) alteradosDuranteCarga.add(livroId);
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    void remover(int livroId) {
+        trava.writeLock().lock();
+        try {
+            if (ligado(existe, livroId)) {
+                if (ligado(disponivel, livroId)) disponiveis--;
+                ligar(existe, livroId, false);
+                ligar(disponivel, livroId, false);
+            }
+            if (alteradosDuranteCarga != null) alteradosDuranteCarga.add(livroId);
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    // ---------- Carga e reconciliação ----------
+    public void carregar() {
+        trava.writeLock().lock();
+        try {
+            alteradosDuranteCarga = new HashSet<>();
+        } finally {
+            trava.writeLock().unlock();
+        }
+
+        long[][] novos = {new long[existe.length], new long[disponivel.length]};
+        try {
+            LeituraStream.percorrer("SELECT id, disponivel FROM livros",
+                    rs -> new int[]{rs.getInt(1), rs.getBoolean(2) ? 1 : 0},
+                    linha -> {
+                        int id = linha[0];
+                        int palavras = (id >>> 6) + 1;
+                        if (palavras > novos[0].length) {
+                            int tamanho = Math.max(palavras, novos[0].length * 2);
+                            novos[0] = Arrays.copyOf(novos[0], tamanho);
+                            novos[1] = Arrays.copyOf(novos[1], tamanho);
+                        }
+                        ligar(novos[0], id, true);
+                        ligar(novos[1], id, linha[1] == 1);
+                    });
+        } catch (RuntimeException e) {
+            trava.writeLock().lock();
+            try {
+                alteradosDuranteCarga = null;
+            } finally {
+                trava.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        trava.writeLock().lock();
+        try {
+            long[] novoExiste = novos[0];
+            long[] novoDisponivel = novos[1];
+            // O que foi alterado pela aplicação durante a leitura vale mais que a leitura
+            for (int id : alteradosDuranteCarga) {
+                int palavras = (id >>> 6) + 1;
+                if (palavras > novoExiste.length) {
+                    novoExiste = Arrays.copyOf(novoExiste, palavras);
+                    novoDisponivel = Arrays.copyOf(novoDisponivel, palavras);
+                }
+                ligar(novoExiste, id, ligado(existe, id));
+                ligar(novoDisponivel, id, ligado(disponivel, id));
+            }
+            alteradosDuranteCarga = null;
+
+            if (carregado) divergencias += contarDiferencas(novoExiste, novoDisponivel);
+            existe = novoExiste;
+            disponivel = novoDisponivel;
+            disponiveis = 0;
+            for (long palavra : disponivel) disponiveis += Long.bitCount(palavra);
+            carregado = true;
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    public synchronized void iniciarReconciliacao(long intervaloMs) {
+        if (reconciliacao != null) return;
+        reconciliacao = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "disponibilidade-livros");
+            t.setDaemon(true);
+            return t;
+        });
+        reconciliacao.scheduleWithFixedDelay(() -> {
+            try {
+                carregar();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Falha ao reconciliar disponibilidade dos livros", e);
+            }
+        }, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void pararReconciliacao() {
+        if (reconciliacao != null) {
+            reconciliacao.shutdownNow();
+            reconciliacao = null;
+        }
+    }
+
+    private long contarDiferencas(long[] novoExiste, long[] novoDisponivel) {
+        long diferencas = 0;
+        int n = Math.max(novoExiste.length, existe.length);
+        for (int i = 0; i < n; i++) {
+            long a = palavra(existe, i) & palavra(disponivel, i);
+            long b = palavra(novoExiste, i) & palavra(novoDisponivel, i);
+            diferencas += Long.bitCount(a ^ b) + Long.bitCount(palavra(existe, i) ^ palavra(novoExiste, i));
+        }
+        return diferencas;
+    }
+
+    // ---------- Bits ----------
+    private void garantirCapacidade(int livroId) {
+        int palavras = (livroId >>> 6) + 1;
+        if (palavras > existe.length) {
+            int tamanho = Math.max(palavras, existe.length * 2);
+            existe = Arrays.copyOf(existe, tamanho);
+            disponivel = Arrays.copyOf(disponivel, tamanho);
+        }
+    }
+
+    private static long palavra(long[] bits, int i) {
+        return i < bits.length ? bits[i] : 0L;
+    }
+
+    private static boolean ligado(long[] bits, int id) {
+        int i = id >>> 6;
+        return id >= 0 && i < bits.length && (bits[i] & (1L << id)) != 0;
+    }
+
+    private static void ligar(long[] bits, int id, boolean valor) {
+        int i = id >>> 6;
+        if (i >= bits.length) return;
+        if (valor) bits[i] |= 1L << id;
+        else bits[i] &= ~(1L << id);
+    }
+}
@@ -0,0 +1,50 @@
+package dao;
+
+import model.Emprestimo;
+
+import java.sql.*;
+
+/*
+ * Bloqueia o livro com um UPDATE condicional: se nenhuma linha mudou, o livro não existe
+ * ou já está emprestado. Só nesse caso (caminho de erro) fazemos um SELECT para dar a mensagem certa.
+ */
+public class EmprestimoCondicional implements EstrategiaEmprestimo {
+
+    @Override
+    public void registrar(Connection conn, Emprestimo e) throws SQLException {
+        String sqlBlockLivro = "UPDATE livros SET disponivel = 0 WHERE id = ? AND disponivel = 1";
+        String sqlInsertEmp  = "INSERT INTO emprestimos (id_livro, id_usuario, data_emprestimo, data_devolucao) VALUES (?, ?, ?, ?)";
+
+        // 1) Tenta pegar o livro
+        try (PreparedStatement ps = conn.prepareStatement(sqlBlockLivro)) {
+            ps.setInt(1, e.getLivroId());
+            if (ps.executeUpdate() == 0) {
+                throw new RuntimeException(livroExiste(conn, e.getLivroId())
+                        ? "Este livro já está emprestado no momento."
+                        : "Livro não encontrado.");
+            }
+        }
+
+        // 2) Insere empréstimo
+        try (PreparedStatement ps = conn.prepareStatement(sqlInsertEmp, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, e.getLivroId());
+            ps.setInt(2, e.getUsuarioId());
+            ps.setDate(3, Date.valueOf(e.getDataEmprestimo()));
+            ps.setDate(4, Date.valueOf(e.getDataDevolucao()));
+            ps.executeUpdate();
+
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) e.setId(rs.getInt(1));
+            }
+        }
+    }
+
+    private boolean livroExiste(Connection conn, int livroId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM livros WHERE id = ?")) {
+            ps.setInt(1, livroId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
@@ -1,81 +1,314 @@
 package dao;
 //Importação das bibliotecas
 import database.Database;
+import database.Transacao;
 import model.Emprestimo;
+import model.EmprestimoDetalhado;
+import model.EventoEmprestimo;
+import model.Reserva;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 /* 
  * DAO de empretimos 
  * Regras prioncipais que este DAO garante:
  * 1) Um livro NÃO pode ser emprestado se já estiver emprestado (disponivel = 0).
  * 2) Sempre que um emprestimo é criado : o livro é marcado como indiponivel (disponivel = 0).
+ *    O "como" fica na EstrategiaEmprestimo escolhida (padrão: EmprestimoPessimista).
  *
  *  Como garantimos consistencia??
+ *  Cada operação roda em Transacao.executarComRetentativa(...): uma conexão, uma transação, refeita
+ *  se o banco a derrubar por deadlock ou espera de trava. Chamadas de outros DAOs feitas lá dentro
+ *  participam da mesma transação.
  * 
  * Observações:
- * 
+ * - Devolver (devolver/devolverLote) preenche data_retorno e libera o livro; a linha fica como histórico.
+ *   deletar apaga de vez (correção de lançamento) e só libera o livro se o empréstimo ainda estava aberto.
+ * - Livro liberado (devolver/devolverLote/deletar/troca em atualizar) com fila de reservas vai direto
+ *   para o primeiro da fila no mesmo commit (ver liberarLivro e ReservaDAO).
+ * - Toda mudança grava um evento em emprestimo_eventos na mesma transação (EventosEmprestimo);
+ *   PublicadorEventos entrega esses eventos a outros sistemas.
+ * - Devolvidos antigos saem para emprestimos_arquivo (ArquivadorEmprestimos); listar e a paginação
+ *   mostram só a tabela principal, buscarPorId e listarPorPeriodo também olham o arquivo quando precisa.
+ * - renovar/renovarDoUsuario estendem o prazo de vários empréstimos num UPDATE só, respeitando
+ *   o limite de renovações (coluna renovacoes) e a fila de reservas do livro.
  */
 
 
 public class EmprestimoDAO {
 
+    // Prazo do empréstimo criado automaticamente para o primeiro da fila de reservas
+    public static final int PRAZO_RESERVA_DIAS = 14;
+
+    // Renovação: dias a mais por renovação e quantas vezes o mesmo empréstimo pode ser renovado
+    public static final int PRAZO_RENOVACAO_DIAS = 7;
+    public static final int MAX_RENOVACOES = 2;
+
+    static final String LIVRO_EMPRESTADO = "Este livro já está emprestado no momento.";
+
+    private final EstrategiaEmprestimo estrategia;
+
+    public EmprestimoDAO() {
+        this(new EmprestimoPessimista());
+    }
+
+    public EmprestimoDAO(EstrategiaEmprestimo estrategia) {
+        this.estrategia = estrategia;
+    }
+
     // ---------- CREATE (INSERIR)  ----------
     public void salvar(Emprestimo e) {
-        String sqlSelectLivro = "SELECT disponivel FROM livros WHERE id = ? FOR UPDATE";//Consulta a disponibilidade
-        String sqlInsertEmp   = "INSERT INTO emprestimos (id_livro, id_usuario, data_emprestimo, data_devolucao) VALUES (?, ?, ?, ?)";// Insere imprestimo
-        String sqlBlockLivro  = "UPDATE livros SET disponivel = 0 WHERE id = ?"; // Marca o livro como indiponivel
-
-        try (Connection conn = Database.getConnection()) {
-            conn.setAutoCommit(false);
-
-            // 1) Trava e checa disponibilidade do livro
-            try (PreparedStatement ps = conn.prepareStatement(sqlSelectLivro)) {
-                ps.setInt(1, e.getLivroId());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        conn.rollback();
-                        throw new RuntimeException("Livro não encontrado.");
+        // Disputas pelo mesmo livro esperam na trava em memória, não no FOR UPDATE (ver TravasLivros)
+        try {
+            Transacao.executarComRetentativa("EmprestimoDAO.salvar", TravasLivros.doLivro(e.getLivroId(), LIVRO_EMPRESTADO), conn -> {
+                registrar(conn, e);
+                return null;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao salvar empréstimo: " + ex.getMessage(), ex);
+        }
+    }
+
+    /*
+     * salvar com chave de idempotência (gerada pelo terminal, uma por pedido de empréstimo).
+     * Repetir o pedido com a mesma chave (ex.: depois de um timeout) devolve o empréstimo original
+     * em vez de falhar com "já está emprestado" ou duplicar.
+     * A chave é gravada antes do empréstimo, na mesma transação: um segundo pedido com a mesma chave
+     * fica esperando na chave primária até o primeiro terminar e então encontra o original.
+     * As chaves valem até expirarChaves(...) removê-las.
+     */
+    public Emprestimo salvar(Emprestimo e, String chave) {
+        if (chave == null || chave.isBlank() || chave.length() > 64) {
+            throw new IllegalArgumentException("Chave de idempotência deve ter de 1 a 64 caracteres.");
+        }
+        Emprestimo original = buscarPorChave(chave);
+        if (original != null) return conferirOriginal(original, e);
+
+        String sqlChave = "INSERT INTO emprestimo_chaves (chave, id_emprestimo) VALUES (?, 0)";
+        String sqlLigar = "UPDATE emprestimo_chaves SET id_emprestimo = ? WHERE chave = ?";
+        // Sem recusa rápida: o bitmap pode dizer "emprestado" justamente pelo pedido original
+        boolean novo;
+        try {
+            novo = Transacao.executarComRetentativa("EmprestimoDAO.salvar", TravasLivros.doLivro(e.getLivroId(), null), conn -> {
+                // 1) Reserva a chave (chave repetida = outro pedido igual já passou por aqui)
+                try (PreparedStatement ps = conn.prepareStatement(sqlChave)) {
+                    ps.setString(1, chave);
+                    ps.executeUpdate();
+                } catch (SQLIntegrityConstraintViolationException repetida) {
+                    return false;
+                }
+
+                // 2) Empréstimo normal + liga a chave ao id gerado
+                registrar(conn, e);
+                try (PreparedStatement ps = conn.prepareStatement(sqlLigar)) {
+                    ps.setInt(1, e.getId());
+                    ps.setString(2, chave);
+                    ps.executeUpdate();
+                }
+                return true;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao salvar empréstimo: " + ex.getMessage(), ex);
+        }
+        if (novo) return e;
+
+        original = buscarPorChave(chave);
+        if (original == null) throw new RuntimeException("O empréstimo desta chave foi excluído.");
+        return conferirOriginal(original, e);
+    }
+
+    // Apaga chaves de idempotência com mais de horas horas; retorna quantas saíram
+    public long expirarChaves(int horas) {
+        // limite calculado no banco, no mesmo relógio do DEFAULT CURRENT_TIMESTAMP
+        String sql = "DELETE FROM emprestimo_chaves WHERE criada_em < NOW() - INTERVAL ? HOUR ORDER BY criada_em LIMIT ?";
+        long apagadas = 0;
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int n;
+            do {
+                ps.setInt(1, horas);
+                ps.setInt(2, ConsultaEmLote.TAMANHO_BLOCO);
+                n = ps.executeUpdate();
+                apagadas += n;
+            } while (n == ConsultaEmLote.TAMANHO_BLOCO);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao expirar chaves de idempotência: " + ex.getMessage(), ex);
+        }
+        return apagadas;
+    }
+
+    // Chave -> empréstimo numa consulta só (chave primária + chave primária)
+    private Emprestimo buscarPorChave(String chave) {
+        String sql = "SELECT e.id, e.id_livro, e.id_usuario, e.data_emprestimo, e.data_devolucao, e.data_retorno "
+                + "FROM emprestimo_chaves c JOIN emprestimos e ON e.id = c.id_emprestimo WHERE c.chave = ?";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, chave);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? map(rs) : null;
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao buscar chave de idempotência: " + ex.getMessage(), ex);
+        }
+    }
+
+    // A mesma chave com outro livro/usuário é erro do terminal, não repetição
+    private static Emprestimo conferirOriginal(Emprestimo original, Emprestimo pedido) {
+        if (original.getLivroId() != pedido.getLivroId() || original.getUsuarioId() != pedido.getUsuarioId()) {
+            throw new RuntimeException("Chave de idempotência já usada em outro empréstimo.");
+        }
+        pedido.setId(original.getId());
+        return original;
+    }
+
+    // Empréstimo na transação corrente + avisos pós-commit (os avisos por último; ver CommitEmGrupo)
+    void registrar(Connection conn, Emprestimo e) throws SQLException {
+        estrategia.registrar(conn, e);
+        UsuarioDAO.ocuparVaga(conn, e.getUsuarioId()); // depois do livro: mesma ordem de travas das devoluções
+        EventosEmprestimo.registrar(conn, EventoEmprestimo.Tipo.CRIADO, e);
+        LivroDAO.disponibilidadeAlterada(e.getLivroId(), false);
+        emprestimoAlterado(e);
+    }
+
+    // ---------- CREATE EM LOTE (vários livros de uma vez no balcão) ----------
+    public ResultadoLote salvarLote(List<Emprestimo> lista) {
+        return salvarLote(lista, false);
+    }
+
+    /*
+     * Uma transação para o lote todo:
+     * 1) trava todos os livros pedidos num único SELECT ... FOR UPDATE, em ordem de id (evita deadlock);
+     * 2) insere os empréstimos aceitos com batch JDBC;
+     * 3) marca todos os livros como indisponíveis num único UPDATE ... WHERE id IN (...).
+     * Itens recusados vão para ResultadoLote.getFalhas(); com abortarEmFalha = true qualquer recusa
+     * desfaz o lote inteiro.
+     */
+    public ResultadoLote salvarLote(List<Emprestimo> lista, boolean abortarEmFalha) {
+        if (lista.isEmpty()) return new ResultadoLote();
+
+        String sqlInsertEmp = "INSERT INTO emprestimos (id_livro, id_usuario, data_emprestimo, data_devolucao) VALUES (?, ?, ?, ?)";
+
+        try {
+            return Transacao.executarComRetentativa("EmprestimoDAO.salvarLote", conn -> {
+                ResultadoLote resultado = new ResultadoLote(); // novo a cada tentativa
+                // 1) Trava e lê a disponibilidade de todos os livros
+                Set<Integer> ids = new TreeSet<>();
+                for (Emprestimo e : lista) ids.add(e.getLivroId());
+                Map<Integer, Boolean> disponiveis = travarLivros(conn, ids);
+
+                // 1b) Trava os contadores dos usuários (depois dos livros, a mesma ordem de salvar)
+                Set<Integer> usuarios = new TreeSet<>();
+                for (Emprestimo e : lista) usuarios.add(e.getUsuarioId());
+                Map<Integer, Integer> abertos = UsuarioDAO.travarContadores(conn, usuarios);
+                int limite = UsuarioDAO.getLimiteEmprestimos();
+
+                List<Emprestimo> aceitos = new ArrayList<>();
+                Set<Integer> reservados = new HashSet<>();
+                Map<Integer, Integer> novosPorUsuario = new HashMap<>();
+                for (Emprestimo e : lista) {
+                    Boolean disponivel = disponiveis.get(e.getLivroId());
+                    Integer doUsuario = abertos.get(e.getUsuarioId());
+                    if (disponivel == null) {
+                        resultado.adicionarFalha(e, "Livro não encontrado.");
+                    } else if (doUsuario == null) {
+                        resultado.adicionarFalha(e, "Usuário não encontrado.");
+                    } else if (!disponivel) {
+                        resultado.adicionarFalha(e, "Este livro já está emprestado no momento.");
+                    } else if (reservados.contains(e.getLivroId())) {
+                        resultado.adicionarFalha(e, "Livro repetido no mesmo lote.");
+                    } else if (doUsuario + novosPorUsuario.getOrDefault(e.getUsuarioId(), 0) >= limite) {
+                        resultado.adicionarFalha(e, "Usuário já tem " + limite + " empréstimos abertos (limite).");
+                    } else {
+                        reservados.add(e.getLivroId());
+                        novosPorUsuario.merge(e.getUsuarioId(), 1, Integer::sum);
+                        aceitos.add(e);
                     }
-                    boolean disponivel = rs.getBoolean(1);
-                    if (!disponivel) {
-                        conn.rollback();
-                        throw new RuntimeException("Este livro já está emprestado no momento.");
+                }
+                if (abortarEmFalha && resultado.temFalhas()) {
+                    throw new RuntimeException("Lote cancelado: " + resultado.getFalhas());
+                }
+                if (aceitos.isEmpty()) return resultado;
+
+                // 2) Insere os empréstimos em batch
+                try (PreparedStatement ps = conn.prepareStatement(sqlInsertEmp, Statement.RETURN_GENERATED_KEYS)) {
+                    for (Emprestimo e : aceitos) {
+                        ps.setInt(1, e.getLivroId());
+                        ps.setInt(2, e.getUsuarioId());
+                        ps.setDate(3, Date.valueOf(e.getDataEmprestimo()));
+                        ps.setDate(4, Date.valueOf(e.getDataDevolucao()));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        for (Emprestimo e : aceitos) {
+                            if (rs.next()) e.setId(rs.getInt(1));
+                        }
                     }
                 }
-            }
 
-            // 2) Insere empréstimo
-            try (PreparedStatement ps = conn.prepareStatement(sqlInsertEmp, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setInt(1, e.getLivroId());
-                ps.setInt(2, e.getUsuarioId());
-                ps.setDate(3, Date.valueOf(e.getDataEmprestimo()));
-                ps.setDate(4, Date.valueOf(e.getDataDevolucao()));
-                ps.executeUpdate();
+                // 3) Marca todos os livros como indisponíveis de uma vez
+                String sqlBlockLivros = "UPDATE livros SET disponivel = 0 WHERE id IN (" + Sql.marcadores(aceitos.size()) + ")";
+                try (PreparedStatement ps = conn.prepareStatement(sqlBlockLivros)) {
+                    int i = 1;
+                    for (Emprestimo e : aceitos) ps.setInt(i++, e.getLivroId());
+                    ps.executeUpdate();
+                }
+                UsuarioDAO.somarEmprestimos(conn, novosPorUsuario);
+                EventosEmprestimo.registrarTodos(conn, EventoEmprestimo.Tipo.CRIADO, aceitos);
 
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) e.setId(rs.getInt(1));
+                for (Emprestimo e : aceitos) {
+                    resultado.adicionarSalvo(e);
+                    LivroDAO.disponibilidadeAlterada(e.getLivroId(), false);
+                    emprestimoAlterado(e);
                 }
-            }
+                return resultado;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao salvar lote de empréstimos: " + ex.getMessage(), ex);
+        }
+    }
 
-            // 3) Marca livro como indisponível
-            try (PreparedStatement ps = conn.prepareStatement(sqlBlockLivro)) {
-                ps.setInt(1, e.getLivroId());
-                ps.executeUpdate();
+    // Trava a linha do livro até o fim da transação (eventos de um livro seguem a ordem dos commits)
+    private static void travarLivro(Connection conn, int livroId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM livros WHERE id = ? FOR UPDATE")) {
+            ps.setInt(1, livroId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
             }
+        }
+    }
 
-            conn.commit();
-        } catch (SQLException ex) {
-            throw new RuntimeException("Erro ao salvar empréstimo: " + ex.getMessage(), ex);
+    // id do livro -> disponivel, travando as linhas na ordem do índice primário
+    private Map<Integer, Boolean> travarLivros(Connection conn, Collection<Integer> ids) throws SQLException {
+        String sql = "SELECT id, disponivel FROM livros WHERE id IN (" + Sql.marcadores(ids.size()) + ") ORDER BY id FOR UPDATE";
+        Map<Integer, Boolean> disponiveis = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int id : ids) ps.setInt(i++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) disponiveis.put(rs.getInt(1), rs.getBoolean(2));
+            }
         }
+        return disponiveis;
     }
 
     // ---------- READ ----------
     public List<Emprestimo> listar() {
         List<Emprestimo> lista = new ArrayList<>();
-        String sql = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao FROM emprestimos ORDER BY id DESC";
+        String sql = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos ORDER BY id DESC";
         try (Connection conn = Database.getConnection();
              Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
@@ -88,8 +321,68 @@ public class EmprestimoDAO {
         return lista;
     }
 
+    // Todos os empréstimos sem montar lista (exportações/auditoria). Feche o Stream: ele segura uma conexão.
+    public Stream<Emprestimo> stream() {
+        return LeituraStream.abrir("SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos ORDER BY id", this::map);
+    }
+
+    public void percorrer(Consumer<? super Emprestimo> acao) {
+        LeituraStream.percorrer("SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos ORDER BY id", this::map, acao);
+    }
+
+    /*
+     * Paginação por chave na mesma ordem de listar() (id decrescente, mais recentes primeiro).
+     * aposId = null traz a primeira página; depois passe Pagina.getUltimoId().
+     */
+    public Pagina<Emprestimo> listarPagina(int tamanho, Integer aposId) {
+        String sql = aposId == null
+                ? "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos ORDER BY id DESC LIMIT ?"
+                : "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos WHERE id < ? ORDER BY id DESC LIMIT ?";
+        List<Emprestimo> lista = listarLimitado(sql, aposId, tamanho + 1);
+        boolean temProxima = lista.size() > tamanho;
+        if (temProxima) lista.remove(tamanho);
+        return new Pagina<>(lista, aposId != null, temProxima, Emprestimo::getId);
+    }
+
+    // Página imediatamente antes do cursor (mais novos que antesDeId)
+    public Pagina<Emprestimo> listarPaginaAnterior(int tamanho, int antesDeId) {
+        String sql = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos WHERE id > ? ORDER BY id LIMIT ?";
+        List<Emprestimo> lista = listarLimitado(sql, antesDeId, tamanho + 1);
+        boolean temAnterior = lista.size() > tamanho;
+        if (temAnterior) lista.remove(tamanho);
+        Collections.reverse(lista);
+        return new Pagina<>(lista, temAnterior, true, Emprestimo::getId);
+    }
+
+    private List<Emprestimo> listarLimitado(String sql, Integer cursor, int limite) {
+        List<Emprestimo> lista = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (cursor != null) ps.setInt(i++, cursor);
+            ps.setInt(i, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(map(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao listar empréstimos: " + ex.getMessage(), ex);
+        }
+        return lista;
+    }
+
+    // Procura também no arquivo (ArquivadorEmprestimos), se já houver algo arquivado
     public Emprestimo buscarPorId(int id) {
-        String sql = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao FROM emprestimos WHERE id = ?";
+        Emprestimo e = buscarPorId(id, "emprestimos");
+        if (e == null && ArquivadorEmprestimos.instancia().getHorizonte() != null) {
+            e = buscarPorId(id, "emprestimos_arquivo");
+        }
+        return e;
+    }
+
+    private Emprestimo buscarPorId(int id, String tabela) {
+        String sql = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM " + tabela + " WHERE id = ?";
         try (Connection conn = Database.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
@@ -102,103 +395,555 @@ public class EmprestimoDAO {
         }
     }
 
+    /*
+     * Empréstimos feitos em [de, ate), mais recentes primeiro.
+     * Todo empréstimo arquivado foi feito antes do horizonte do arquivamento, então o arquivo
+     * só entra na consulta (UNION ALL) quando o período começa antes dele.
+     */
+    public List<Emprestimo> listarPorPeriodo(LocalDate de, LocalDate ate) {
+        String colunas = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM ";
+        String filtro = " WHERE data_emprestimo >= ? AND data_emprestimo < ?";
+        LocalDate horizonte = ArquivadorEmprestimos.instancia().getHorizonte();
+        boolean comArquivo = horizonte != null && de.isBefore(horizonte);
+        String sql = comArquivo
+                ? colunas + "emprestimos" + filtro + " UNION ALL " + colunas + "emprestimos_arquivo" + filtro + " ORDER BY id DESC"
+                : colunas + "emprestimos" + filtro + " ORDER BY id DESC";
+
+        List<Emprestimo> lista = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, Date.valueOf(de));
+            ps.setDate(2, Date.valueOf(ate));
+            if (comArquivo) {
+                ps.setDate(3, Date.valueOf(de));
+                ps.setDate(4, Date.valueOf(ate));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(map(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao listar empréstimos do período: " + ex.getMessage(), ex);
+        }
+        return lista;
+    }
+
+    /*
+     * Tela de empréstimos numa ida ao banco: JOIN com livros e usuarios, filtros opcionais
+     * e paginação por chave (id decrescente, igual a listarPagina).
+     */
+    public Pagina<EmprestimoDetalhado> listarDetalhado(FiltroEmprestimo filtro, int tamanho, Integer aposId) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT e.id, e.id_livro, e.id_usuario, e.data_emprestimo, e.data_devolucao, e.data_retorno, "
+                + "l.titulo, l.autor, u.nome, u.email "
+                + "FROM emprestimos e "
+                + "JOIN livros l ON l.id = e.id_livro "
+                + "JOIN usuarios u ON u.id = e.id_usuario "
+                + "WHERE 1 = 1");
+        List<Object> parametros = new ArrayList<>();
+        if (filtro.getUsuarioId() != null) {
+            sql.append(" AND e.id_usuario = ?");
+            parametros.add(filtro.getUsuarioId());
+        }
+        if (filtro.getLivroId() != null) {
+            sql.append(" AND e.id_livro = ?");
+            parametros.add(filtro.getLivroId());
+        }
+        if (filtro.isSomenteAbertos() || filtro.isSomenteAtrasados()) {
+            sql.append(" AND e.data_retorno IS NULL");
+        }
+        if (filtro.isSomenteAtrasados()) {
+            sql.append(" AND e.data_devolucao < ?");
+            parametros.add(Date.valueOf(LocalDate.now()));
+        }
+        if (aposId != null) {
+            sql.append(" AND e.id < ?");
+            parametros.add(aposId);
+        }
+        sql.append(" ORDER BY e.id DESC LIMIT ?");
+        parametros.add(tamanho + 1);
+
+        List<EmprestimoDetalhado> lista = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < parametros.size(); i++) ps.setObject(i + 1, parametros.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(new EmprestimoDetalhado(
+                            rs.getInt("id"),
+                            rs.getInt("id_livro"),
+                            rs.getString("titulo"),
+                            rs.getString("autor"),
+                            rs.getInt("id_usuario"),
+                            rs.getString("nome"),
+                            rs.getString("email"),
+                            rs.getDate("data_emprestimo").toLocalDate(),
+                            rs.getDate("data_devolucao").toLocalDate(),
+                            dataOuNull(rs, "data_retorno")));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao listar empréstimos: " + ex.getMessage(), ex);
+        }
+        boolean temProxima = lista.size() > tamanho;
+        if (temProxima) lista.remove(tamanho);
+        return new Pagina<>(lista, aposId != null, temProxima, EmprestimoDetalhado::getId);
+    }
+
+    // Empréstimos abertos com vencimento em [de, ate); de = null lê tudo que vence antes de ate
+    List<Emprestimo> listarVencidosEntre(LocalDate de, LocalDate ate) {
+        String sql = de == null
+                ? "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos WHERE data_retorno IS NULL AND data_devolucao < ?"
+                : "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos WHERE data_retorno IS NULL AND data_devolucao >= ? AND data_devolucao < ?";
+        List<Emprestimo> lista = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (de != null) ps.setDate(i++, Date.valueOf(de));
+            ps.setDate(i, Date.valueOf(ate));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(map(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao listar empréstimos vencidos: " + ex.getMessage(), ex);
+        }
+        return lista;
+    }
+
+    // id -> empréstimo em poucas consultas IN (...); ids inexistentes ficam de fora
+    public Map<Integer, Emprestimo> buscarPorIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) return new HashMap<>();
+        return ConsultaEmLote.buscarPorIds(
+                "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos WHERE id IN (%s)",
+                ids, this::map, Emprestimo::getId);
+    }
+
     // ---------- UPDATE (com transação + troca de livro segura) ----------
     public void atualizar(Emprestimo e) {
-        Emprestimo antes = buscarPorId(e.getId());
-        if (antes == null) throw new RuntimeException("Empréstimo não encontrado.");
-
         String sqlSelectLivro = "SELECT disponivel FROM livros WHERE id = ? FOR UPDATE";
         String sqlUpdateEmp   = "UPDATE emprestimos SET id_livro = ?, id_usuario = ?, data_emprestimo = ?, data_devolucao = ? WHERE id = ?";
         String sqlBlockLivro  = "UPDATE livros SET disponivel = 0 WHERE id = ?";
-        String sqlFreeLivro   = "UPDATE livros SET disponivel = 1 WHERE id = ?";
 
-        try (Connection conn = Database.getConnection()) {
-            conn.setAutoCommit(false);
+        // Trava do livro de destino: troca para um livro disputado espera em memória (ver TravasLivros)
+        try {
+            Transacao.executarComRetentativa("EmprestimoDAO.atualizar", TravasLivros.doLivro(e.getLivroId(), null), conn -> {
+                // 0) Lê o estado atual já travado, na mesma conexão/transação
+                Emprestimo antes = buscarParaAlterar(conn, e.getId());
+                if (antes == null) throw new RuntimeException("Empréstimo não encontrado.");
+                if (!antes.isAberto() && antes.getLivroId() != e.getLivroId()) {
+                    throw new RuntimeException("Empréstimo já devolvido não pode trocar de livro.");
+                }
+                e.setDataRetorno(antes.getDataRetorno()); // a devolução só muda por devolver()
+                if (antes.getLivroId() == e.getLivroId()) travarLivro(conn, e.getLivroId()); // para o evento; na troca o passo 1 trava
+
+                // 1) Se o livro mudou, verificar novo livro e travar
+                if (antes.getLivroId() != e.getLivroId()) {
+                    try (PreparedStatement ps = conn.prepareStatement(sqlSelectLivro)) {
+                        ps.setInt(1, e.getLivroId());
+                        try (ResultSet rs = ps.executeQuery()) {
+                            if (!rs.next()) throw new RuntimeException("Novo livro não encontrado.");
+                            boolean disponivel = rs.getBoolean(1);
+                            if (!disponivel) throw new RuntimeException("O novo livro já está emprestado.");
+                        }
+                    }
+                }
 
-            // 1) Se o livro mudou, verificar novo livro e travar
-            if (antes.getLivroId() != e.getLivroId()) {
-                try (PreparedStatement ps = conn.prepareStatement(sqlSelectLivro)) {
+                // 2) Atualiza o empréstimo
+                try (PreparedStatement ps = conn.prepareStatement(sqlUpdateEmp)) {
                     ps.setInt(1, e.getLivroId());
+                    ps.setInt(2, e.getUsuarioId());
+                    ps.setDate(3, Date.valueOf(e.getDataEmprestimo()));
+                    ps.setDate(4, Date.valueOf(e.getDataDevolucao()));
+                    ps.setInt(5, e.getId());
+                    ps.executeUpdate();
+                }
+                EventosEmprestimo.registrar(conn, EventoEmprestimo.Tipo.ALTERADO, e); // antes de um eventual repasse do livro antigo
+
+                // 3) Ajusta disponibilidade dos livros se trocou
+                if (antes.getLivroId() != e.getLivroId()) {
+                    // bloqueia novo
+                    try (PreparedStatement ps = conn.prepareStatement(sqlBlockLivro)) {
+                        ps.setInt(1, e.getLivroId());
+                        ps.executeUpdate();
+                    }
+                    LivroDAO.disponibilidadeAlterada(e.getLivroId(), false);
+                    // libera antigo (ou entrega ao primeiro da fila de reservas)
+                    liberarLivro(conn, antes.getLivroId());
+                }
+
+                // 4) Empréstimo aberto mudou de usuário: a vaga passa de um contador para o outro (ordem de id)
+                if (antes.isAberto() && antes.getUsuarioId() != e.getUsuarioId()) {
+                    if (e.getUsuarioId() < antes.getUsuarioId()) {
+                        UsuarioDAO.ocuparVaga(conn, e.getUsuarioId());
+                        UsuarioDAO.somarEmprestimos(conn, antes.getUsuarioId(), -1);
+                    } else {
+                        UsuarioDAO.somarEmprestimos(conn, antes.getUsuarioId(), -1);
+                        UsuarioDAO.ocuparVaga(conn, e.getUsuarioId());
+                    }
+                }
+                emprestimoAlterado(e);
+                return null;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao atualizar empréstimo: " + ex.getMessage(), ex);
+        }
+    }
+
+    // ---------- RENOVAÇÃO (estende o prazo de vários empréstimos num UPDATE só) ----------
+    /*
+     * Renova os empréstimos abertos informados: o novo prazo é dias depois do prazo atual (ou de hoje,
+     * se já venceu). Ficam de fora, sem erro, os já devolvidos, os que já têm MAX_RENOVACOES e os de
+     * livros com fila de reservas (o próximo da fila não espera mais por isso).
+     * Retorna id -> nova data de devolução, só dos renovados.
+     */
+    public Map<Integer, LocalDate> renovar(Collection<Integer> ids) {
+        return renovar(ids, PRAZO_RENOVACAO_DIAS);
+    }
+
+    public Map<Integer, LocalDate> renovar(Collection<Integer> ids, int dias) {
+        if (dias < 1) throw new IllegalArgumentException("A renovação deve ser de pelo menos 1 dia.");
+        Set<Integer> distintos = new TreeSet<>(ids);
+        if (distintos.isEmpty()) return new TreeMap<>();
+        if (distintos.size() > ConsultaEmLote.TAMANHO_BLOCO) {
+            throw new IllegalArgumentException("No máximo " + ConsultaEmLote.TAMANHO_BLOCO + " renovações por lote.");
+        }
+        String sqlTravar = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos WHERE id IN ("
+                + Sql.marcadores(distintos.size()) + ") AND data_retorno IS NULL ORDER BY id FOR UPDATE";
+
+        try {
+            return Transacao.executarComRetentativa("EmprestimoDAO.renovar", conn -> {
+                List<Emprestimo> abertos = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(sqlTravar)) {
+                    int p = 1;
+                    for (int id : distintos) ps.setInt(p++, id);
                     try (ResultSet rs = ps.executeQuery()) {
-                        if (!rs.next()) {
-                            conn.rollback();
-                            throw new RuntimeException("Novo livro não encontrado.");
-                        }
-                        boolean disponivel = rs.getBoolean(1);
-                        if (!disponivel) {
-                            conn.rollback();
-                            throw new RuntimeException("O novo livro já está emprestado.");
-                        }
+                        while (rs.next()) abertos.add(map(rs));
                     }
                 }
-            }
+                return renovarTravados(conn, abertos, dias);
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao renovar empréstimos: " + ex.getMessage(), ex);
+        }
+    }
 
-            // 2) Atualiza o empréstimo
-            try (PreparedStatement ps = conn.prepareStatement(sqlUpdateEmp)) {
-                ps.setInt(1, e.getLivroId());
-                ps.setInt(2, e.getUsuarioId());
-                ps.setDate(3, Date.valueOf(e.getDataEmprestimo()));
-                ps.setDate(4, Date.valueOf(e.getDataDevolucao()));
-                ps.setInt(5, e.getId());
-                ps.executeUpdate();
+    // Todos os empréstimos abertos do usuário (mesmas regras de renovar)
+    public Map<Integer, LocalDate> renovarDoUsuario(int usuarioId) {
+        return renovarDoUsuario(usuarioId, PRAZO_RENOVACAO_DIAS);
+    }
+
+    public Map<Integer, LocalDate> renovarDoUsuario(int usuarioId, int dias) {
+        if (dias < 1) throw new IllegalArgumentException("A renovação deve ser de pelo menos 1 dia.");
+        // Faixa dos abertos do usuário no índice (id_usuario, data_retorno, id)
+        String sqlTravar = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos "
+                + "WHERE id_usuario = ? AND data_retorno IS NULL ORDER BY id FOR UPDATE";
+
+        try {
+            return Transacao.executarComRetentativa("EmprestimoDAO.renovarDoUsuario", conn -> {
+                List<Emprestimo> abertos = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(sqlTravar)) {
+                    ps.setInt(1, usuarioId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) abertos.add(map(rs));
+                    }
+                }
+                return renovarTravados(conn, abertos, dias);
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao renovar empréstimos do usuário: " + ex.getMessage(), ex);
+        }
+    }
+
+    /*
+     * Renova empréstimos abertos já travados (em ordem de id) na transação corrente.
+     * Limite de renovações e fila de reservas são conferidos no próprio UPDATE; depois uma leitura
+     * das novas datas diz quais linhas mudaram (com dias > 0, renovado = prazo diferente do lido).
+     */
+    private Map<Integer, LocalDate> renovarTravados(Connection conn, List<Emprestimo> abertos, int dias) throws SQLException {
+        Map<Integer, LocalDate> novasDatas = new TreeMap<>();
+        if (abertos.isEmpty()) return novasDatas;
+
+        // Livros antes do UPDATE: ordem livro -> reservas (como ReservaDAO.reservar) e o evento de
+        // cada livro entra com a linha dele travada
+        Set<Integer> livros = new TreeSet<>();
+        for (Emprestimo e : abertos) livros.add(e.getLivroId());
+        travarLivros(conn, livros);
+
+        String marcadores = Sql.marcadores(abertos.size());
+        String sqlRenovar = "UPDATE emprestimos e "
+                + "SET e.data_devolucao = DATE_ADD(GREATEST(e.data_devolucao, ?), INTERVAL ? DAY), e.renovacoes = e.renovacoes + 1 "
+                + "WHERE e.id IN (" + marcadores + ") AND e.renovacoes < ? "
+                + "AND NOT EXISTS (SELECT 1 FROM reservas r WHERE r.id_livro = e.id_livro)";
+        String sqlLerPrazos = "SELECT id, data_devolucao FROM emprestimos WHERE id IN (" + marcadores + ")";
+
+        // 1) Um UPDATE para o conjunto todo
+        int renovados;
+        try (PreparedStatement ps = conn.prepareStatement(sqlRenovar)) {
+            int p = 1;
+            ps.setDate(p++, Date.valueOf(LocalDate.now()));
+            ps.setInt(p++, dias);
+            for (Emprestimo e : abertos) ps.setInt(p++, e.getId());
+            ps.setInt(p, MAX_RENOVACOES);
+            renovados = ps.executeUpdate();
+        }
+        if (renovados == 0) return novasDatas;
+
+        // 2) Novos prazos (a transação enxerga o próprio UPDATE)
+        Map<Integer, LocalDate> prazos = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sqlLerPrazos)) {
+            int p = 1;
+            for (Emprestimo e : abertos) ps.setInt(p++, e.getId());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) prazos.put(rs.getInt("id"), rs.getDate("data_devolucao").toLocalDate());
             }
+        }
+
+        // 3) Eventos e monitor de atrasos só dos que mudaram
+        List<Emprestimo> alterados = new ArrayList<>();
+        for (Emprestimo e : abertos) {
+            LocalDate nova = prazos.get(e.getId());
+            if (nova == null || nova.equals(e.getDataDevolucao())) continue;
+            e.setDataDevolucao(nova);
+            alterados.add(e);
+            novasDatas.put(e.getId(), nova);
+            emprestimoAlterado(e);
+        }
+        EventosEmprestimo.registrarTodos(conn, EventoEmprestimo.Tipo.ALTERADO, alterados);
+        return novasDatas;
+    }
+
+    // ---------- DEVOLUÇÃO (fecha o empréstimo e libera o livro; a linha fica como histórico) ----------
+    // Retorna o empréstimo criado para o primeiro da fila de reservas, ou null se o livro ficou disponível
+    public Emprestimo devolver(int id) {
+        return devolver(id, LocalDate.now());
+    }
+
+    public Emprestimo devolver(int id, LocalDate data) {
+        String sqlFecharEmp = "UPDATE emprestimos SET data_retorno = ? WHERE id = ? AND data_retorno IS NULL";
+
+        try {
+            return Transacao.executarComRetentativa("EmprestimoDAO.devolver", conn -> {
+                Emprestimo emp = buscarParaAlterar(conn, id);
+                if (emp == null) throw new RuntimeException("Empréstimo não encontrado.");
+                if (!emp.isAberto()) throw new RuntimeException("Empréstimo já foi devolvido.");
+                travarLivro(conn, emp.getLivroId()); // antes do evento: ordem dos eventos do livro = ordem dos commits
 
-            // 3) Ajusta disponibilidade dos livros se trocou
-            if (antes.getLivroId() != e.getLivroId()) {
-                // libera antigo
-                try (PreparedStatement ps = conn.prepareStatement(sqlFreeLivro)) {
-                    ps.setInt(1, antes.getLivroId());
+                try (PreparedStatement ps = conn.prepareStatement(sqlFecharEmp)) {
+                    ps.setDate(1, Date.valueOf(data));
+                    ps.setInt(2, id);
                     ps.executeUpdate();
                 }
-                // bloqueia novo
-                try (PreparedStatement ps = conn.prepareStatement(sqlBlockLivro)) {
-                    ps.setInt(1, e.getLivroId());
+                emp.setDataRetorno(data);
+                EventosEmprestimo.registrar(conn, EventoEmprestimo.Tipo.DEVOLVIDO, emp);
+                Transacao.aposCommit(() -> MonitorAtrasos.instancia().emprestimoRemovido(id));
+                UsuarioDAO.somarEmprestimos(conn, emp.getUsuarioId(), -1); // antes do repasse: a vaga já conta
+                return liberarLivro(conn, emp.getLivroId());
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao devolver empréstimo: " + ex.getMessage(), ex);
+        }
+    }
+
+    // Devolução de vários empréstimos no balcão: uma transação, poucos comandos para o lote todo.
+    // Retorna os ids efetivamente devolvidos (inexistentes e já devolvidos ficam de fora).
+    public List<Integer> devolverLote(Collection<Integer> ids) {
+        return devolverLote(ids, LocalDate.now());
+    }
+
+    public List<Integer> devolverLote(Collection<Integer> ids, LocalDate data) {
+        Set<Integer> distintos = new TreeSet<>(ids);
+        if (distintos.isEmpty()) return new ArrayList<>();
+        if (distintos.size() > ConsultaEmLote.TAMANHO_BLOCO) {
+            throw new IllegalArgumentException("No máximo " + ConsultaEmLote.TAMANHO_BLOCO + " devoluções por lote.");
+        }
+
+        try {
+            return Transacao.executarComRetentativa("EmprestimoDAO.devolverLote", conn -> {
+                // 1) Trava os abertos em ordem de id (mesma ordem em todas as transações: sem deadlock entre lotes)
+                List<Integer> devolvidos = new ArrayList<>();
+                List<Emprestimo> abertos = new ArrayList<>();
+                Set<Integer> livros = new TreeSet<>();
+                String sqlTravar = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos WHERE id IN ("
+                        + Sql.marcadores(distintos.size()) + ") AND data_retorno IS NULL ORDER BY id FOR UPDATE";
+                try (PreparedStatement ps = conn.prepareStatement(sqlTravar)) {
+                    int p = 1;
+                    for (int id : distintos) ps.setInt(p++, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Emprestimo e = map(rs);
+                            e.setDataRetorno(data);
+                            abertos.add(e);
+                            devolvidos.add(e.getId());
+                            livros.add(e.getLivroId());
+                        }
+                    }
+                }
+                if (devolvidos.isEmpty()) return devolvidos;
+                travarLivros(conn, livros); // antes dos eventos, em ordem de id
+
+                // 2) Fecha todos os empréstimos de uma vez
+                String sqlFechar = "UPDATE emprestimos SET data_retorno = ? WHERE id IN ("
+                        + Sql.marcadores(devolvidos.size()) + ")";
+                try (PreparedStatement ps = conn.prepareStatement(sqlFechar)) {
+                    ps.setDate(1, Date.valueOf(data));
+                    int p = 2;
+                    for (int id : devolvidos) ps.setInt(p++, id);
                     ps.executeUpdate();
                 }
-            }
+                EventosEmprestimo.registrarTodos(conn, EventoEmprestimo.Tipo.DEVOLVIDO, abertos);
+
+                // 3) Vagas devolvidas antes dos repasses: quem devolve e está na fila de outro livro do lote já cabe
+                Map<Integer, Integer> porUsuario = new HashMap<>();
+                for (Emprestimo e : abertos) porUsuario.merge(e.getUsuarioId(), -1, Integer::sum);
+                UsuarioDAO.somarEmprestimos(conn, porUsuario);
 
-            conn.commit();
+                // 4) Livros com fila de reservas vão para o próximo da fila; os demais são liberados de uma vez
+                Set<Integer> comFila = ReservaDAO.livrosComFila(conn, livros);
+                Set<Integer> livres = new TreeSet<>(livros);
+                livres.removeAll(comFila);
+                for (int livroId : new TreeSet<>(comFila)) liberarLivro(conn, livroId);
+                if (!livres.isEmpty()) {
+                    String sqlLiberar = "UPDATE livros SET disponivel = 1 WHERE id IN (" + Sql.marcadores(livres.size()) + ")";
+                    try (PreparedStatement ps = conn.prepareStatement(sqlLiberar)) {
+                        int p = 1;
+                        for (int id : livres) ps.setInt(p++, id);
+                        ps.executeUpdate();
+                    }
+                    for (int livroId : livres) LivroDAO.disponibilidadeAlterada(livroId, true);
+                }
+                List<Integer> fechados = new ArrayList<>(devolvidos);
+                Transacao.aposCommit(() -> {
+                    for (int id : fechados) MonitorAtrasos.instancia().emprestimoRemovido(id);
+                });
+                return devolvidos;
+            });
         } catch (SQLException ex) {
-            throw new RuntimeException("Erro ao atualizar empréstimo: " + ex.getMessage(), ex);
+            throw new RuntimeException("Erro ao devolver empréstimos: " + ex.getMessage(), ex);
         }
     }
 
     // ---------- DELETE (com transação + liberar livro) ----------
     public void deletar(int id) {
-        Emprestimo emp = buscarPorId(id);
-        if (emp == null) return;
-
         String sqlDeleteEmp = "DELETE FROM emprestimos WHERE id = ?";
-        String sqlFreeLivro  = "UPDATE livros SET disponivel = 1 WHERE id = ?";
 
-        try (Connection conn = Database.getConnection()) {
-            conn.setAutoCommit(false);
+        try {
+            Transacao.executarComRetentativa("EmprestimoDAO.deletar", conn -> {
+                Emprestimo emp = buscarParaAlterar(conn, id);
+                if (emp == null) return null;
+                travarLivro(conn, emp.getLivroId()); // antes do evento, mesmo com o empréstimo já devolvido
 
-            // 1) Exclui o empréstimo
-            try (PreparedStatement ps = conn.prepareStatement(sqlDeleteEmp)) {
-                ps.setInt(1, id);
-                ps.executeUpdate();
+                // 1) Exclui o empréstimo
+                try (PreparedStatement ps = conn.prepareStatement(sqlDeleteEmp)) {
+                    ps.setInt(1, id);
+                    ps.executeUpdate();
+                }
+
+                EventosEmprestimo.registrar(conn, EventoEmprestimo.Tipo.REMOVIDO, emp);
+
+                // 2) Libera o livro (se ainda estava com o usuário)
+                if (emp.isAberto()) {
+                    UsuarioDAO.somarEmprestimos(conn, emp.getUsuarioId(), -1);
+                    liberarLivro(conn, emp.getLivroId());
+                }
+                Transacao.aposCommit(() -> MonitorAtrasos.instancia().emprestimoRemovido(id));
+                return null;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erro ao deletar empréstimo: " + ex.getMessage(), ex);
+        }
+    }
+
+    /*
+     * Tira o livro de um empréstimo dentro da transação corrente. Com fila de reservas, o primeiro
+     * da fila que ainda cabe no limite de empréstimos recebe o livro na hora (novo empréstimo de
+     * PRAZO_RESERVA_DIAS dias, mesmo commit) e o livro não chega a ficar disponível; quem está no
+     * limite continua na fila. Sem ninguém que possa receber, disponivel = 1.
+     * Retorna o empréstimo criado para a reserva, ou null.
+     */
+    private Emprestimo liberarLivro(Connection conn, int livroId) throws SQLException {
+        String sqlTravarLivro = "SELECT disponivel FROM livros WHERE id = ? FOR UPDATE"; // livro -> reservas, como em ReservaDAO
+        String sqlFreeLivro   = "UPDATE livros SET disponivel = 1 WHERE id = ?";
+        String sqlInsertEmp   = "INSERT INTO emprestimos (id_livro, id_usuario, data_emprestimo, data_devolucao) VALUES (?, ?, ?, ?)";
+
+        try (PreparedStatement ps = conn.prepareStatement(sqlTravarLivro)) {
+            ps.setInt(1, livroId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null; // livro já excluído
             }
+        }
 
-            // 2) Libera o livro
+        Reserva r = ReservaDAO.retirarPrimeiraComVaga(conn, livroId); // já ocupa a vaga do usuário
+        if (r == null) {
             try (PreparedStatement ps = conn.prepareStatement(sqlFreeLivro)) {
-                ps.setInt(1, emp.getLivroId());
+                ps.setInt(1, livroId);
                 ps.executeUpdate();
             }
+            LivroDAO.disponibilidadeAlterada(livroId, true);
+            return null;
+        }
 
-            conn.commit();
-        } catch (SQLException ex) {
-            throw new RuntimeException("Erro ao deletar empréstimo: " + ex.getMessage(), ex);
+        LocalDate hoje = LocalDate.now();
+        Emprestimo novo = new Emprestimo(0, livroId, r.getUsuarioId(), hoje, hoje.plusDays(PRAZO_RESERVA_DIAS));
+        try (PreparedStatement ps = conn.prepareStatement(sqlInsertEmp, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, novo.getLivroId());
+            ps.setInt(2, novo.getUsuarioId());
+            ps.setDate(3, Date.valueOf(novo.getDataEmprestimo()));
+            ps.setDate(4, Date.valueOf(novo.getDataDevolucao()));
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) novo.setId(rs.getInt(1));
+            }
+        }
+        EventosEmprestimo.registrar(conn, EventoEmprestimo.Tipo.CRIADO, novo);
+        emprestimoAlterado(novo);
+        return novo;
+    }
+
+    // Lê o empréstimo travando a linha até o fim da transação corrente
+    private Emprestimo buscarParaAlterar(Connection conn, int id) throws SQLException {
+        String sql = "SELECT id, id_livro, id_usuario, data_emprestimo, data_devolucao, data_retorno FROM emprestimos WHERE id = ? FOR UPDATE";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? map(rs) : null;
+            }
         }
     }
 
+    // Pedidos recusados pelo bitmap de disponibilidade sem chegar ao banco (TravasLivros)
+    public static long recusadosSemBanco() {
+        return TravasLivros.getRecusados();
+    }
+
+    // Liga/desliga as travas em memória e a recusa rápida pelo bitmap (TravasLivros); ligadas por padrão.
+    // Desligar serve para medir só a estratégia de banco (bench.BenchmarkEmprestimo).
+    public static void setTravasEmMemoria(boolean ligadas) {
+        TravasLivros.setAtivas(ligadas);
+    }
+
     // ---------- Helper ----------
+    // Avisa o monitor de atrasos depois do commit (cópia: quem chamou pode continuar mexendo no objeto)
+    private static void emprestimoAlterado(Emprestimo e) {
+        Emprestimo copia = new Emprestimo(e.getId(), e.getLivroId(), e.getUsuarioId(),
+                e.getDataEmprestimo(), e.getDataDevolucao(), e.getDataRetorno());
+        Transacao.aposCommit(() -> MonitorAtrasos.instancia().emprestimoAlterado(copia));
+    }
+
     private Emprestimo map(ResultSet rs) throws SQLException {
         int id          = rs.getInt("id");
         int idLivro     = rs.getInt("id_livro");
         int idUsuario   = rs.getInt("id_usuario");
         LocalDate dtEmp = rs.getDate("data_emprestimo").toLocalDate();
         LocalDate dtDev = rs.getDate("data_devolucao").toLocalDate();
-        return new Emprestimo(id, idLivro, idUsuario, dtEmp, dtDev);
+        LocalDate dtRet = dataOuNull(rs, "data_retorno");
+        return new Emprestimo(id, idLivro, idUsuario, dtEmp, dtDev, dtRet);
+    }
+
+    private static LocalDate dataOuNull(ResultSet rs, String coluna) throws SQLException {
+        Date d = rs.getDate(coluna);
+        return d == null ? null : d.toLocalDate();
     }
 }
@@ -0,0 +1,45 @@
+package dao;
+
+import model.Emprestimo;
+
+import java.sql.*;
+
+// Fluxo original: trava a linha do livro, confere, insere e bloqueia
+public class EmprestimoPessimista implements EstrategiaEmprestimo {
+
+    @Override
+    public void registrar(Connection conn, Emprestimo e) throws SQLException {
+        String sqlSelectLivro = "SELECT disponivel FROM livros WHERE id = ? FOR UPDATE";//Consulta a disponibilidade
+        String sqlInsertEmp   = "INSERT INTO emprestimos (id_livro, id_usuario, data_emprestimo, data_devolucao) VALUES (?, ?, ?, ?)";// Insere imprestimo
+        String sqlBlockLivro  = "UPDATE livros SET disponivel = 0 WHERE id = ?"; // Marca o livro como indiponivel
+
+        // 1) Trava e checa disponibilidade do livro
+        try (PreparedStatement ps = conn.prepareStatement(sqlSelectLivro)) {
+            ps.setInt(1, e.getLivroId());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new RuntimeException("Livro não encontrado.");
+                boolean disponivel = rs.getBoolean(1);
+                if (!disponivel) throw new RuntimeException("Este livro já está emprestado no momento.");
+            }
+        }
+
+        // 2) Insere empréstimo
+        try (PreparedStatement ps = conn.prepareStatement(sqlInsertEmp, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, e.getLivroId());
+            ps.setInt(2, e.getUsuarioId());
+            ps.setDate(3, Date.valueOf(e.getDataEmprestimo()));
+            ps.setDate(4, Date.valueOf(e.getDataDevolucao()));
+            ps.executeUpdate();
+
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) e.setId(rs.getInt(1));
+            }
+        }
+
+        // 3) Marca livro como indisponível
+        try (PreparedStatement ps = conn.prepareStatement(sqlBlockLivro)) {
+            ps.setInt(1, e.getLivroId());
+            ps.executeUpdate();
+        }
+    }
+}
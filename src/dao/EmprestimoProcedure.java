@@ -0,0 +1,30 @@
+package dao;
+
+import model.Emprestimo;
+
+import java.sql.*;
+
+/*
+ * Checkout inteiro no servidor, numa única chamada (ver sql/001_registrar_emprestimo.sql).
+ * O procedimento não abre transação própria: roda dentro da transação de EmprestimoDAO.salvar.
+ * Retorno em p_id: id do empréstimo, -1 = livro não encontrado, -2 = livro já emprestado.
+ */
+public class EmprestimoProcedure implements EstrategiaEmprestimo {
+
+    @Override
+    public void registrar(Connection conn, Emprestimo e) throws SQLException {
+        try (CallableStatement cs = conn.prepareCall("{CALL registrar_emprestimo(?, ?, ?, ?, ?)}")) {
+            cs.setInt(1, e.getLivroId());
+            cs.setInt(2, e.getUsuarioId());
+            cs.setDate(3, Date.valueOf(e.getDataEmprestimo()));
+            cs.setDate(4, Date.valueOf(e.getDataDevolucao()));
+            cs.registerOutParameter(5, Types.INTEGER);
+            cs.execute();
+
+            int id = cs.getInt(5);
+            if (id == -1) throw new RuntimeException("Livro não encontrado.");
+            if (id == -2) throw new RuntimeException("Este livro já está emprestado no momento.");
+            e.setId(id);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package dao;
+
+import model.Emprestimo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/*
+ * Como o empréstimo é registrado dentro da transação aberta por EmprestimoDAO.salvar.
+ * A estratégia deve: recusar livro inexistente ou já emprestado (RuntimeException),
+ * inserir o empréstimo (preenchendo o id) e marcar o livro como indisponível.
+ *
+ * Implementações:
+ * - EmprestimoPessimista: SELECT ... FOR UPDATE, INSERT, UPDATE (3 idas ao banco).
+ * - EmprestimoCondicional: UPDATE ... WHERE disponivel = 1 e confere as linhas afetadas, depois INSERT (2 idas).
+ * - EmprestimoProcedure: CALL registrar_emprestimo(...) faz tudo no servidor (1 ida).
+ */
+public interface EstrategiaEmprestimo {
+    void registrar(Connection conn, Emprestimo e) throws SQLException;
+}
@@ -0,0 +1,50 @@
+package dao;
+
+import model.Emprestimo;
+import model.EventoEmprestimo;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/*
+ * Gravação na outbox emprestimo_eventos (sql/008_emprestimo_eventos.sql), sempre na conexão
+ * da transação que mudou o empréstimo: o evento existe se e somente se a mudança foi confirmada.
+ * Quem chama já deve ter travado a linha do livro, para os ids dos eventos de um mesmo livro
+ * seguirem a ordem dos commits (PublicadorEventos entrega nessa ordem).
+ */
+final class EventosEmprestimo {
+    private static final String SQL_INSERT =
+            "INSERT INTO emprestimo_eventos (tipo, id_emprestimo, id_livro, id_usuario, data_devolucao) VALUES (?, ?, ?, ?, ?)";
+
+    private EventosEmprestimo() {}
+
+    static void registrar(Connection conn, EventoEmprestimo.Tipo tipo, Emprestimo e) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            preencher(ps, tipo, e);
+            ps.executeUpdate();
+        }
+    }
+
+    // Vários eventos do mesmo tipo num batch só (lotes do balcão)
+    static void registrarTodos(Connection conn, EventoEmprestimo.Tipo tipo, Collection<Emprestimo> lista) throws SQLException {
+        if (lista.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            for (Emprestimo e : lista) {
+                preencher(ps, tipo, e);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void preencher(PreparedStatement ps, EventoEmprestimo.Tipo tipo, Emprestimo e) throws SQLException {
+        ps.setString(1, tipo.name());
+        ps.setInt(2, e.getId());
+        ps.setInt(3, e.getLivroId());
+        ps.setInt(4, e.getUsuarioId());
+        ps.setDate(5, e.getDataDevolucao() == null ? null : Date.valueOf(e.getDataDevolucao()));
+    }
+}
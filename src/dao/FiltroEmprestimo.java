@@ -0,0 +1,25 @@
+package dao;
+
+/*
+ * Filtros de EmprestimoDAO.listarDetalhado. Campos nulos/falsos não filtram.
+ * Ex.: new FiltroEmprestimo().setUsuarioId(7).setSomenteAtrasados(true)
+ */
+public class FiltroEmprestimo {
+    private Integer usuarioId;
+    private Integer livroId;
+    private boolean somenteAtrasados;
+    private boolean somenteAbertos;
+
+    public Integer getUsuarioId() { return usuarioId; }
+    public FiltroEmprestimo setUsuarioId(Integer usuarioId) { this.usuarioId = usuarioId; return this; }
+
+    public Integer getLivroId() { return livroId; }
+    public FiltroEmprestimo setLivroId(Integer livroId) { this.livroId = livroId; return this; }
+
+    public boolean isSomenteAtrasados() { return somenteAtrasados; }
+    public FiltroEmprestimo setSomenteAtrasados(boolean somenteAtrasados) { this.somenteAtrasados = somenteAtrasados; return this; }
+
+    // Sem data de retorno (livro ainda com o usuário)
+    public boolean isSomenteAbertos() { return somenteAbertos; }
+    public FiltroEmprestimo setSomenteAbertos(boolean somenteAbertos) { this.somenteAbertos = somenteAbertos; return this; }
+}
@@ -0,0 +1,306 @@
+package dao;
+
+import database.Database;
+import model.Livro;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Importação em massa do catálogo a partir de CSV (titulo,autor,ano[,disponivel]).
+ *
+ * Pipeline:
+ * 1) Uma thread lê o arquivo em blocos de linhas e entrega cada bloco a um pool de parse.
+ * 2) Os blocos em processamento ficam numa fila limitada: se a gravação atrasar, a leitura para
+ *    (back-pressure) e a memória não cresce com o tamanho do arquivo.
+ * 3) A thread que chamou importar() consome os blocos NA ORDEM do arquivo, remove duplicados
+ *    (no arquivo e contra o catálogo existente) e grava com INSERT de várias linhas por vez,
+ *    um commit por lote de tamanhoLote linhas.
+ *
+ * Os livros inseridos entram no bitmap de disponibilidade e no índice de busca sem recarga.
+ */
+public class ImportadorLivros {
+    private final int tamanhoLote;
+    private final int threadsParse;
+    private final int linhasPorBloco;
+
+    public ImportadorLivros() {
+        this(1_000, Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 5_000);
+    }
+
+    public ImportadorLivros(int tamanhoLote, int threadsParse, int linhasPorBloco) {
+        this.tamanhoLote = tamanhoLote;
+        this.threadsParse = threadsParse;
+        this.linhasPorBloco = linhasPorBloco;
+    }
+
+    /*
+     * Cada lote é confirmado ao ser gravado, então uma falha no meio não desfaz o que já entrou.
+     * Por isso a falha não é lançada: volta no próprio resultado (getFalha), junto com os ids já
+     * gravados e getUltimaLinhaGravada, a partir de onde o arquivo pode ser retomado.
+     */
+    public ResultadoImportacao importar(Path arquivo) {
+        long inicio = System.currentTimeMillis();
+        ResultadoImportacao resultado = new ResultadoImportacao();
+        Set<String> vistos = chavesExistentes();
+
+        ExecutorService parse = Executors.newFixedThreadPool(threadsParse, r -> {
+            Thread t = new Thread(r, "importacao-parse");
+            t.setDaemon(true);
+            return t;
+        });
+        BlockingQueue<Future<List<Linha>>> fila = new ArrayBlockingQueue<>(threadsParse * 2);
+        AtomicLong linhasLidas = new AtomicLong();
+        Thread leitor = new Thread(() -> linhasLidas.set(ler(arquivo, parse, fila)), "importacao-leitura");
+        leitor.setDaemon(true);
+        leitor.start();
+
+        List<Linha> lote = new ArrayList<>(tamanhoLote);
+        long processadas = 0;
+        try {
+            while (true) {
+                List<Linha> bloco = fila.take().get();
+                if (bloco.isEmpty()) break; // fim do arquivo
+
+                for (Linha l : bloco) {
+                    processadas++;
+                    if (l.motivo != null) {
+                        resultado.adicionarRejeicao(new ResultadoImportacao.Rejeicao(l.numero, l.texto, l.motivo));
+                    } else if (!vistos.add(chave(l.livro))) {
+                        resultado.adicionarRejeicao(new ResultadoImportacao.Rejeicao(l.numero, l.texto, "Livro duplicado."));
+                    } else {
+                        lote.add(l);
+                        if (lote.size() == tamanhoLote) {
+                            gravar(lote, resultado);
+                            lote.clear();
+                        }
+                    }
+                }
+            }
+            if (!lote.isEmpty()) gravar(lote, resultado);
+            leitor.join();
+            resultado.setLinhasLidas(linhasLidas.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resultado.setFalha(new RuntimeException("Importação interrompida.", e));
+        } catch (ExecutionException e) {
+            resultado.setFalha(new RuntimeException("Erro ao ler arquivo de importação: " + e.getCause().getMessage(), e.getCause()));
+        } catch (RuntimeException e) {
+            resultado.setFalha(e);
+        } finally {
+            leitor.interrupt(); // se a gravação falhou, libera a leitura presa na fila cheia
+            parse.shutdownNow();
+        }
+        if (resultado.getFalha() != null) resultado.setLinhasLidas(processadas);
+        resultado.setDuracaoMs(System.currentTimeMillis() - inicio);
+        return resultado;
+    }
+
+    // ---------- Leitura + parse paralelo ----------
+    // Devolve o número de linhas de dados lidas (sem o cabeçalho)
+    private long ler(Path arquivo, ExecutorService parse, BlockingQueue<Future<List<Linha>>> fila) {
+        long numero = 0;
+        boolean cabecalho = false;
+        // Marca que encerra o consumo em importar(): bloco vazio no fim do arquivo, ou o erro da leitura
+        Future<List<Linha>> fim = CompletableFuture.failedFuture(new IllegalStateException("Leitura do arquivo abortada."));
+        try (BufferedReader in = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            List<String> textos = new ArrayList<>(linhasPorBloco);
+            long primeira = 1;
+            String texto;
+            while ((texto = in.readLine()) != null) {
+                numero++;
+                if (numero == 1 && ehCabecalho(texto)) {
+                    cabecalho = true;
+                    primeira = 2;
+                    continue;
+                }
+                textos.add(texto);
+                if (textos.size() == linhasPorBloco) {
+                    List<String> bloco = textos;
+                    long base = primeira;
+                    fila.put(parse.submit(() -> interpretar(bloco, base)));
+                    textos = new ArrayList<>(linhasPorBloco);
+                    primeira = numero + 1;
+                }
+            }
+            if (!textos.isEmpty()) {
+                List<String> bloco = textos;
+                long base = primeira;
+                fila.put(parse.submit(() -> interpretar(bloco, base)));
+            }
+            fim = CompletableFuture.completedFuture(new ArrayList<>());
+        } catch (IOException | RuntimeException e) {
+            fim = CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // importar() desistiu: ninguém espera a marca
+        } finally {
+            // put, como os blocos: com a fila cheia a marca espera vaga em vez de se perder
+            if (!Thread.currentThread().isInterrupted()) {
+                try {
+                    fila.put(fim);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return cabecalho ? numero - 1 : numero;
+    }
+
+    // Só a linha exatamente titulo,autor,ano[,disponivel] (sem caixa nem acento); um livro "Título..." é dado
+    private static boolean ehCabecalho(String texto) {
+        List<String> nomes = new ArrayList<>();
+        for (String c : campos(texto.startsWith("\uFEFF") ? texto.substring(1) : texto)) {
+            nomes.add(IndiceLivros.normalizar(c).trim());
+        }
+        return nomes.equals(List.of("titulo", "autor", "ano"))
+                || nomes.equals(List.of("titulo", "autor", "ano", "disponivel"));
+    }
+
+    private List<Linha> interpretar(List<String> textos, long primeiraLinha) {
+        List<Linha> linhas = new ArrayList<>(textos.size());
+        long numero = primeiraLinha;
+        int anoMaximo = Year.now().getValue() + 1;
+        for (String texto : textos) {
+            Linha l = new Linha(numero++, texto);
+            linhas.add(l);
+            if (texto.isBlank()) {
+                l.motivo = "Linha vazia.";
+                continue;
+            }
+            List<String> campos = campos(texto);
+            if (campos.size() < 3) {
+                l.motivo = "Esperado titulo,autor,ano[,disponivel].";
+                continue;
+            }
+            String titulo = campos.get(0).trim();
+            String autor = campos.get(1).trim();
+            if (titulo.isEmpty() || titulo.length() > 255) {
+                l.motivo = "Título vazio ou longo demais.";
+                continue;
+            }
+            if (autor.isEmpty() || autor.length() > 255) {
+                l.motivo = "Autor vazio ou longo demais.";
+                continue;
+            }
+            int ano;
+            try {
+                ano = Integer.parseInt(campos.get(2).trim());
+            } catch (NumberFormatException e) {
+                l.motivo = "Ano inválido.";
+                continue;
+            }
+            if (ano < 0 || ano > anoMaximo) {
+                l.motivo = "Ano fora do intervalo.";
+                continue;
+            }
+            boolean disponivel = campos.size() < 4 || !campos.get(3).trim().matches("(?i)0|false|nao|não");
+            l.livro = new Livro(0, titulo, autor, ano, disponivel);
+        }
+        return linhas;
+    }
+
+    // CSV simples: vírgula como separador, aspas duplas para campos com vírgula ("" = aspas literal)
+    static List<String> campos(String linha) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        boolean aspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (aspas) {
+                if (c == '"' && i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    atual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    aspas = false;
+                } else {
+                    atual.append(c);
+                }
+            } else if (c == '"') {
+                aspas = true;
+            } else if (c == ',') {
+                campos.add(atual.toString());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        campos.add(atual.toString());
+        return campos;
+    }
+
+    // ---------- Gravação ----------
+    private void gravar(List<Linha> lote, ResultadoImportacao resultado) {
+        StringBuilder sql = new StringBuilder("INSERT INTO livros (titulo, autor, ano, disponivel) VALUES ");
+        for (int i = 0; i < lote.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS)) {
+            int p = 1;
+            for (Linha l : lote) {
+                ps.setString(p++, l.livro.getTitulo());
+                ps.setString(p++, l.livro.getAutor());
+                ps.setInt(p++, l.livro.getAno());
+                ps.setBoolean(p++, l.livro.isDisponivel());
+            }
+            ps.executeUpdate();
+
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                for (Linha l : lote) {
+                    if (!rs.next()) break;
+                    l.livro.setId(rs.getInt(1));
+                    resultado.adicionarId(l.livro.getId());
+                    DisponibilidadeLivros.instancia().definir(l.livro.getId(), l.livro.isDisponivel());
+                    IndiceLivros.instancia().adicionar(l.livro);
+                }
+            }
+            resultado.setUltimaLinhaGravada(lote.get(lote.size() - 1).numero);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao importar lote de livros: " + e.getMessage(), e);
+        }
+    }
+
+    private Set<String> chavesExistentes() {
+        Set<String> chaves = new HashSet<>();
+        new LivroDAO().percorrer(l -> chaves.add(chave(l)));
+        return chaves;
+    }
+
+    private static String chave(Livro l) {
+        return IndiceLivros.normalizar(l.getTitulo()).trim() + '|'
+                + IndiceLivros.normalizar(l.getAutor()).trim() + '|' + l.getAno();
+    }
+
+    private static final class Linha {
+        final long numero;
+        final String texto;
+        Livro livro;
+        String motivo;
+
+        Linha(long numero, String texto) {
+            this.numero = numero;
+            this.texto = texto;
+        }
+    }
+}
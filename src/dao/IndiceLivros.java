@@ -0,0 +1,346 @@
+package dao;
+
+import model.Livro;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/*
+ * Índice invertido em memória sobre titulo e autor dos livros.
+ *
+ * - Normalização: minúsculas e sem acento ("Memórias Póstumas" -> "memorias", "postumas").
+ * - Cada termo aponta para uma lista ordenada de ids (int[]) com o peso do termo em cada livro;
+ *   termos do título pesam mais que os do autor.
+ * - Consulta: todos os termos precisam casar (AND); o último termo também casa por prefixo
+ *   (a partir de MIN_PREFIXO letras), para permitir busca enquanto o usuário digita.
+ *   Palavras vazias ("de", "a"...) são ignoradas na consulta. Resultado ordenado por TF-IDF.
+ * - LivroDAO mantém o índice atualizado depois de cada commit (salvar/atualizar/deletar).
+ */
+public class IndiceLivros {
+    private static final IndiceLivros INSTANCIA = new IndiceLivros();
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+    private static final int PESO_TITULO = 3;
+    private static final int PESO_AUTOR = 1;
+    private static final int MAX_TERMOS_PREFIXO = 64;
+    private static final int MIN_PREFIXO = 3; // "a", "ma": casam só o termo exato, sem expandir
+    private static final Set<String> PALAVRAS_VAZIAS = new HashSet<>(Arrays.asList(
+            "a", "o", "as", "os", "e", "de", "da", "do", "das", "dos", "em", "na", "no", "nas", "nos",
+            "um", "uma", "com", "por", "para", "the", "of", "and"));
+
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postagens> termos = new TreeMap<>();
+    private final Map<Integer, String[]> termosPorLivro = new HashMap<>();
+    private boolean carregado;
+    private Map<Integer, Livro> pendentes; // alterações durante carregar(); valor null = removido
+
+    public static IndiceLivros instancia() {
+        return INSTANCIA;
+    }
+
+    // ---------- Manutenção ----------
+    public synchronized void carregar() {
+        trava.writeLock().lock();
+        try {
+            pendentes = new LinkedHashMap<>();
+        } finally {
+            trava.writeLock().unlock();
+        }
+
+        TreeMap<String, Postagens> novos = new TreeMap<>();
+        Map<Integer, String[]> novosPorLivro = new HashMap<>();
+        try {
+            new LivroDAO().percorrer(l -> indexar(novos, novosPorLivro, l));
+        } catch (RuntimeException e) {
+            trava.writeLock().lock();
+            try {
+                pendentes = null;
+            } finally {
+                trava.writeLock().unlock();
+            }
+            throw e;
+        }
+        for (Postagens p : novos.values()) p.compactar();
+
+        trava.writeLock().lock();
+        try {
+            termos.clear();
+            termos.putAll(novos);
+            termosPorLivro.clear();
+            termosPorLivro.putAll(novosPorLivro);
+            // Reaplica o que mudou enquanto a tabela era lida
+            for (Map.Entry<Integer, Livro> en : pendentes.entrySet()) {
+                desindexar(en.getKey());
+                if (en.getValue() != null) indexar(termos, termosPorLivro, en.getValue());
+            }
+            pendentes = null;
+            carregado = true;
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    void adicionar(Livro livro) {
+        trava.writeLock().lock();
+        try {
+            if (!carregado && pendentes == null) return; // ainda não montado: a carga vai ler da tabela
+            if (pendentes != null) pendentes.put(livro.getId(), livro);
+            desindexar(livro.getId());
+            indexar(termos, termosPorLivro, livro);
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    void remover(int livroId) {
+        trava.writeLock().lock();
+        try {
+            if (!carregado && pendentes == null) return;
+            if (pendentes != null) pendentes.put(livroId, null);
+            desindexar(livroId);
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    public boolean isCarregado() {
+        trava.readLock().lock();
+        try {
+            return carregado;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    private static void indexar(TreeMap<String, Postagens> destino, Map<Integer, String[]> porLivro, Livro livro) {
+        Map<String, Integer> pesos = new HashMap<>();
+        for (String t : tokenizar(livro.getTitulo())) pesos.merge(t, PESO_TITULO, Integer::sum);
+        for (String t : tokenizar(livro.getAutor())) pesos.merge(t, PESO_AUTOR, Integer::sum);
+        for (Map.Entry<String, Integer> en : pesos.entrySet()) {
+            destino.computeIfAbsent(en.getKey(), k -> new Postagens()).colocar(livro.getId(), en.getValue());
+        }
+        porLivro.put(livro.getId(), pesos.keySet().toArray(new String[0]));
+    }
+
+    private void desindexar(int livroId) {
+        String[] antigos = termosPorLivro.remove(livroId);
+        if (antigos == null) return;
+        for (String t : antigos) {
+            Postagens p = termos.get(t);
+            if (p != null && p.retirar(livroId) && p.tamanho == 0) termos.remove(t);
+        }
+    }
+
+    // ---------- Consulta ----------
+    /*
+     * Ids dos livros mais relevantes, do melhor para o pior.
+     * Interseção direto nos int[] ordenados, começando pelo termo mais raro: cada termo seguinte só
+     * confere (busca binária) os candidatos que sobraram, e só os sobreviventes são pontuados.
+     */
+    public List<Integer> buscar(String consulta, int limite) {
+        List<String> partes = semPalavrasVazias(tokenizar(consulta));
+        if (partes.isEmpty() || limite <= 0) return new ArrayList<>();
+
+        trava.readLock().lock();
+        try {
+            int totalLivros = Math.max(1, termosPorLivro.size());
+            List<Grupo> grupos = new ArrayList<>(partes.size());
+            for (int i = 0; i < partes.size(); i++) {
+                String termo = partes.get(i);
+                boolean prefixo = i == partes.size() - 1 && termo.length() >= MIN_PREFIXO;
+                Grupo g = grupo(termo, prefixo);
+                if (g.total == 0) return new ArrayList<>(); // termo sem livro: AND vazio
+                grupos.add(g);
+            }
+            grupos.sort((a, b) -> Long.compare(a.total, b.total));
+
+            // 1) Candidatos = ids do termo mais raro; os demais termos só filtram
+            int[] candidatos = grupos.get(0).ids();
+            int n = candidatos.length;
+            for (int g = 1; g < grupos.size() && n > 0; g++) {
+                Grupo grupo = grupos.get(g);
+                int mantidos = 0;
+                for (int c = 0; c < n; c++) {
+                    if (grupo.contem(candidatos[c])) candidatos[mantidos++] = candidatos[c];
+                }
+                n = mantidos;
+            }
+            if (n == 0) return new ArrayList<>();
+
+            // 2) Pontua só os sobreviventes e guarda os limite melhores
+            double[] pontos = new double[n];
+            for (int c = 0; c < n; c++) {
+                for (Grupo grupo : grupos) pontos[c] += grupo.pontuar(candidatos[c], totalLivros);
+            }
+            return melhores(candidatos, pontos, n, limite);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    // Postagens que respondem por um termo da consulta (várias quando casa por prefixo)
+    private Grupo grupo(String termo, boolean prefixo) {
+        Grupo g = new Grupo();
+        if (!prefixo) {
+            g.adicionar(termos.get(termo), 1.0);
+            return g;
+        }
+        // Prefixo: termos que começam com o texto (no máximo MAX_TERMOS_PREFIXO, em ordem alfabética)
+        NavigableMap<String, Postagens> faixa = termos.subMap(termo, true, termo + Character.MAX_VALUE, false);
+        for (Map.Entry<String, Postagens> en : faixa.entrySet()) {
+            // termo exato vale mais que um complemento de prefixo
+            g.adicionar(en.getValue(), en.getKey().equals(termo) ? 1.0 : 0.8);
+            if (g.listas.size() >= MAX_TERMOS_PREFIXO) break;
+        }
+        return g;
+    }
+
+    // Tira palavras vazias ("de", "a"...), que casam com boa parte do catálogo; se só houver elas, ficam
+    static List<String> semPalavrasVazias(List<String> partes) {
+        List<String> uteis = new ArrayList<>(partes.size());
+        for (String t : partes) {
+            if (!PALAVRAS_VAZIAS.contains(t)) uteis.add(t);
+        }
+        return uteis.isEmpty() ? partes : uteis;
+    }
+
+    private static List<Integer> melhores(int[] ids, double[] pontos, int n, int limite) {
+        // Heap de posições (pior no topo); só entra quem supera o pior já guardado
+        PriorityQueue<Integer> topo = new PriorityQueue<>((a, b) -> pontos[a] == pontos[b]
+                ? Integer.compare(ids[b], ids[a])
+                : Double.compare(pontos[a], pontos[b]));
+        for (int c = 0; c < n; c++) {
+            if (topo.size() == limite) {
+                int pior = topo.peek();
+                if (pontos[c] < pontos[pior] || (pontos[c] == pontos[pior] && ids[c] > ids[pior])) continue;
+                topo.poll();
+            }
+            topo.offer(c);
+        }
+        List<Integer> resultado = new ArrayList<>(topo.size());
+        while (!topo.isEmpty()) resultado.add(ids[topo.poll()]);
+        Collections.reverse(resultado);
+        return resultado;
+    }
+
+    private static final class Grupo {
+        final List<Postagens> listas = new ArrayList<>(1);
+        final List<Double> fatores = new ArrayList<>(1);
+        long total;
+
+        void adicionar(Postagens p, double fator) {
+            if (p == null || p.tamanho == 0) return;
+            listas.add(p);
+            fatores.add(fator);
+            total += p.tamanho;
+        }
+
+        // Cópia ordenada e sem repetição dos ids (união quando há mais de uma lista)
+        int[] ids() {
+            if (listas.size() == 1) {
+                Postagens p = listas.get(0);
+                return Arrays.copyOf(p.ids, p.tamanho);
+            }
+            int[] todos = new int[(int) total];
+            int n = 0;
+            for (Postagens p : listas) {
+                System.arraycopy(p.ids, 0, todos, n, p.tamanho);
+                n += p.tamanho;
+            }
+            Arrays.sort(todos);
+            int distintos = 0;
+            for (int i = 0; i < n; i++) {
+                if (distintos == 0 || todos[distintos - 1] != todos[i]) todos[distintos++] = todos[i];
+            }
+            return Arrays.copyOf(todos, distintos);
+        }
+
+        boolean contem(int id) {
+            for (Postagens p : listas) {
+                if (Arrays.binarySearch(p.ids, 0, p.tamanho, id) >= 0) return true;
+            }
+            return false;
+        }
+
+        // Melhor pontuação do id entre as listas do termo (peso * idf * fator)
+        double pontuar(int id, int totalLivros) {
+            double melhor = 0;
+            for (int i = 0; i < listas.size(); i++) {
+                Postagens p = listas.get(i);
+                int pos = Arrays.binarySearch(p.ids, 0, p.tamanho, id);
+                if (pos < 0) continue;
+                double idf = Math.log(1.0 + totalLivros / (double) p.tamanho);
+                melhor = Math.max(melhor, p.pesos[pos] * idf * fatores.get(i));
+            }
+            return melhor;
+        }
+    }
+
+    // ---------- Texto ----------
+    static String normalizar(String texto) {
+        if (texto == null) return "";
+        String semAcento = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return semAcento.toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        for (String t : SEPARADORES.split(normalizar(texto))) {
+            if (!t.isEmpty()) tokens.add(t);
+        }
+        return tokens;
+    }
+
+    // Lista de ids ordenada + peso de cada id, em arrays primitivos
+    private static final class Postagens {
+        int[] ids = new int[2];
+        int[] pesos = new int[2];
+        int tamanho;
+
+        void colocar(int id, int peso) {
+            int pos = Arrays.binarySearch(ids, 0, tamanho, id);
+            if (pos >= 0) {
+                pesos[pos] = peso;
+                return;
+            }
+            pos = -pos - 1;
+            if (tamanho == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(4, tamanho * 2));
+                pesos = Arrays.copyOf(pesos, Math.max(4, tamanho * 2));
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, tamanho - pos);
+            System.arraycopy(pesos, pos, pesos, pos + 1, tamanho - pos);
+            ids[pos] = id;
+            pesos[pos] = peso;
+            tamanho++;
+        }
+
+        boolean retirar(int id) {
+            int pos = Arrays.binarySearch(ids, 0, tamanho, id);
+            if (pos < 0) return false;
+            System.arraycopy(ids, pos + 1, ids, pos, tamanho - pos - 1);
+            System.arraycopy(pesos, pos + 1, pesos, pos, tamanho - pos - 1);
+            tamanho--;
+            return true;
+        }
+
+        void compactar() {
+            ids = Arrays.copyOf(ids, tamanho);
+            pesos = Arrays.copyOf(pesos, tamanho);
+        }
+    }
+}
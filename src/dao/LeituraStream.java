@@ -0,0 +1,79 @@
+package dao;
+
+import database.Database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+ * Leitura de tabela inteira sem materializar uma lista.
+ *
+ * Usa o modo de streaming do MySQL (statement forward-only, read-only e fetchSize = Integer.MIN_VALUE):
+ * o driver entrega uma linha por vez e a memória fica constante, seja qual for o tamanho da tabela.
+ * Enquanto o stream estiver aberto a conexão fica presa a ele, por isso o Stream DEVE ser fechado
+ * (try-with-resources) — o close() fecha ResultSet, Statement e devolve a conexão ao pool.
+ * Pública para ferramentas fora dos DAOs (bench.MemoriaLeituraStream mede a memória com ela).
+ */
+public final class LeituraStream {
+
+    private LeituraStream() {}
+
+    public static <T> Stream<T> abrir(String sql, Mapeador<T> mapeador) {
+        Connection conn = Database.getConnection();
+        Statement st = null;
+        ResultSet rs;
+        try {
+            st = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            st.setFetchSize(Integer.MIN_VALUE);
+            rs = st.executeQuery(sql);
+        } catch (SQLException e) {
+            fechar(null, st, conn);
+            throw new RuntimeException("Erro ao abrir leitura: " + e.getMessage(), e);
+        }
+
+        Statement statement = st;
+        Spliterator<T> linhas = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> acao) {
+                try {
+                    if (!rs.next()) return false;
+                    acao.accept(mapeador.map(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Erro ao ler linha: " + e.getMessage(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(linhas, false).onClose(() -> fechar(rs, statement, conn));
+    }
+
+    // Versão com callback: abre, percorre tudo e fecha
+    public static <T> void percorrer(String sql, Mapeador<T> mapeador, Consumer<? super T> acao) {
+        try (Stream<T> s = abrir(sql, mapeador)) {
+            s.forEach(acao);
+        }
+    }
+
+    private static void fechar(ResultSet rs, Statement st, Connection conn) {
+        try {
+            if (rs != null) rs.close();
+            if (st != null) st.close();
+        } catch (SQLException ignorada) {
+            // o close da conexão abaixo ainda precisa acontecer
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException ignorada) {
+                // conexão já devolvida
+            }
+        }
+    }
+}
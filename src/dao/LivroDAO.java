@@ -1,14 +1,25 @@
 package dao;
 
 import database.Database;
+import database.Transacao;
 import model.Livro;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class LivroDAO {
 
+    // Compartilhado por todas as instâncias: os DAOs são criados sob demanda pelas telas
+    private static final CacheLeitura<Integer, Livro> CACHE = new CacheLeitura<>(2_000, 10 * 60_000);
 
     public void salvar(Livro livro) {
         String sql = "INSERT INTO livros (titulo, autor, ano, disponivel) VALUES (?, ?, ?, ?)";
@@ -24,6 +35,8 @@ public class LivroDAO {
             try (ResultSet rs = stmt.getGeneratedKeys()) {
                 if (rs.next()) livro.setId(rs.getInt(1));
             }
+            disponibilidadeAlterada(livro.getId(), livro.isDisponivel());
+            reindexar(livro);
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao salvar livro: " + e.getMessage(), e);
         }
@@ -37,13 +50,7 @@ public class LivroDAO {
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                livros.add(new Livro(
-                        rs.getInt("id"),
-                        rs.getString("titulo"),
-                        rs.getString("autor"),
-                        rs.getInt("ano"),
-                        rs.getBoolean("disponivel")
-                ));
+                livros.add(map(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao listar livros: " + e.getMessage(), e);
@@ -51,8 +58,102 @@ public class LivroDAO {
         return livros;
     }
 
-   
+    // Todos os livros sem montar lista (exportações/auditoria). Feche o Stream: ele segura uma conexão.
+    public Stream<Livro> stream() {
+        return LeituraStream.abrir("SELECT id, titulo, autor, ano, disponivel FROM livros ORDER BY id", this::map);
+    }
+
+    public void percorrer(Consumer<? super Livro> acao) {
+        LeituraStream.percorrer("SELECT id, titulo, autor, ano, disponivel FROM livros ORDER BY id", this::map, acao);
+    }
+
+    /*
+     * Paginação por chave: usa o índice primário (WHERE id > cursor ORDER BY id LIMIT n)
+     * em vez de OFFSET, então o custo de uma página não cresce com o tamanho da tabela.
+     * aposId = null traz a primeira página.
+     */
+    public Pagina<Livro> listarPagina(int tamanho, Integer aposId) {
+        String sql = aposId == null
+                ? "SELECT id, titulo, autor, ano, disponivel FROM livros ORDER BY id LIMIT ?"
+                : "SELECT id, titulo, autor, ano, disponivel FROM livros WHERE id > ? ORDER BY id LIMIT ?";
+        List<Livro> livros = listarLimitado(sql, aposId, tamanho + 1);
+        boolean temProxima = livros.size() > tamanho;
+        if (temProxima) livros.remove(tamanho);
+        return new Pagina<>(livros, aposId != null, temProxima, Livro::getId);
+    }
+
+    // Página imediatamente antes do cursor (lê de trás para frente e inverte)
+    public Pagina<Livro> listarPaginaAnterior(int tamanho, int antesDeId) {
+        String sql = "SELECT id, titulo, autor, ano, disponivel FROM livros WHERE id < ? ORDER BY id DESC LIMIT ?";
+        List<Livro> livros = listarLimitado(sql, antesDeId, tamanho + 1);
+        boolean temAnterior = livros.size() > tamanho;
+        if (temAnterior) livros.remove(tamanho);
+        Collections.reverse(livros);
+        return new Pagina<>(livros, temAnterior, true, Livro::getId);
+    }
+
+    private List<Livro> listarLimitado(String sql, Integer cursor, int limite) {
+        List<Livro> livros = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            if (cursor != null) stmt.setInt(i++, cursor);
+            stmt.setInt(i, limite);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    livros.add(map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar livros: " + e.getMessage(), e);
+        }
+        return livros;
+    }
+
+    /*
+     * Busca por título/autor no índice em memória (sem acento, por prefixo, ordenada por relevância).
+     * O índice é montado na primeira busca.
+     */
+    public List<Livro> buscar(String consulta, int limite) {
+        IndiceLivros indice = IndiceLivros.instancia();
+        if (!indice.isCarregado()) indice.carregar();
+        List<Integer> ids = indice.buscar(consulta, limite);
+        Map<Integer, Livro> porId = buscarPorIds(ids);
+        List<Livro> livros = new ArrayList<>();
+        for (int id : ids) {
+            Livro l = porId.get(id);
+            if (l != null) livros.add(l);
+        }
+        return livros;
+    }
+
+    // id -> livro em poucas consultas IN (...); ids inexistentes ficam de fora
+    public Map<Integer, Livro> buscarPorIds(Collection<Integer> ids) {
+        Map<Integer, Livro> resultado = new HashMap<>();
+        if (ids.isEmpty()) return resultado;
+        Set<Integer> distintos = new LinkedHashSet<>(ids);
+        Map<Integer, Livro> encontrados = Transacao.ativa()
+                ? buscarNoBanco(distintos)
+                : CACHE.obterTodos(distintos, this::buscarNoBanco);
+        for (Map.Entry<Integer, Livro> en : encontrados.entrySet()) {
+            resultado.put(en.getKey(), copiar(en.getValue()));
+        }
+        return resultado;
+    }
+
+    private Map<Integer, Livro> buscarNoBanco(Collection<Integer> ids) {
+        return ConsultaEmLote.buscarPorIds("SELECT id, titulo, autor, ano, disponivel FROM livros WHERE id IN (%s)",
+                ids, this::map, Livro::getId);
+    }
+
+    // Passa pelo cache; dentro de uma transação lê direto do banco (pode haver alteração ainda não confirmada)
     public Livro buscarPorId(int id) {
+        Livro livro = Transacao.ativa() ? buscarNoBanco(id) : CACHE.obter(id, this::buscarNoBanco);
+        return livro == null ? null : copiar(livro);
+    }
+
+    private Livro buscarNoBanco(int id) {
         String sql = "SELECT id, titulo, autor, ano, disponivel FROM livros WHERE id = ?";
         try (Connection conn = Database.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -60,13 +161,7 @@ public class LivroDAO {
             stmt.setInt(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return new Livro(
-                            rs.getInt("id"),
-                            rs.getString("titulo"),
-                            rs.getString("autor"),
-                            rs.getInt("ano"),
-                            rs.getBoolean("disponivel")
-                    );
+                    return map(rs);
                 }
                 return null;
             }
@@ -87,6 +182,8 @@ public class LivroDAO {
             stmt.setBoolean(4, livro.isDisponivel());
             stmt.setInt(5, livro.getId());
             stmt.executeUpdate();
+            disponibilidadeAlterada(livro.getId(), livro.isDisponivel());
+            reindexar(livro);
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao atualizar livro: " + e.getMessage(), e);
         }
@@ -100,6 +197,7 @@ public class LivroDAO {
 
             stmt.setInt(1, id);
             stmt.executeUpdate();
+            livroRemovido(id);
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao deletar livro: " + e.getMessage(), e);
         }
@@ -113,6 +211,7 @@ public class LivroDAO {
             stmt.setBoolean(1, disponivel);
             stmt.setInt(2, livroId);
             stmt.executeUpdate();
+            disponibilidadeAlterada(livroId, disponivel);
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao atualizar disponibilidade do livro: " + e.getMessage(), e);
         }
@@ -121,4 +220,65 @@ public class LivroDAO {
     // Atalhos práticos
     public void marcarIndisponivel(int livroId) { atualizarDisponibilidade(livroId, false); }
     public void marcarDisponivel(int livroId)   { atualizarDisponibilidade(livroId, true);  }
+
+    // Responde pelo bitmap em memória quando ele já foi carregado; senão consulta o banco
+    public boolean estaDisponivel(int livroId) {
+        Boolean emMemoria = DisponibilidadeLivros.instancia().estaDisponivel(livroId);
+        if (emMemoria != null) return emMemoria;
+        Livro livro = buscarPorId(livroId);
+        return livro != null && livro.isDisponivel();
+    }
+
+    public int contarDisponiveis() {
+        int emMemoria = DisponibilidadeLivros.instancia().contarDisponiveis();
+        if (emMemoria >= 0) return emMemoria;
+        String sql = "SELECT COUNT(*) FROM livros WHERE disponivel = 1";
+        try (Connection conn = Database.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao contar livros disponíveis: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- Cache e bitmap de disponibilidade ----------
+    public static CacheLeitura<Integer, Livro> cacheLivros() { return CACHE; }
+
+    // Chamados por quem altera a linha do livro (inclusive EmprestimoDAO); valem depois do commit
+    static void disponibilidadeAlterada(int livroId, boolean disponivel) {
+        Transacao.aposCommit(() -> {
+            CACHE.invalidar(livroId);
+            DisponibilidadeLivros.instancia().definir(livroId, disponivel);
+        });
+    }
+
+    static void livroRemovido(int livroId) {
+        Transacao.aposCommit(() -> {
+            CACHE.invalidar(livroId);
+            DisponibilidadeLivros.instancia().remover(livroId);
+            IndiceLivros.instancia().remover(livroId);
+        });
+    }
+
+    private static void reindexar(Livro livro) {
+        Livro copia = copiar(livro);
+        Transacao.aposCommit(() -> IndiceLivros.instancia().adicionar(copia));
+    }
+
+    // O cache guarda a instância; quem chama recebe uma cópia que pode alterar à vontade
+    private static Livro copiar(Livro l) {
+        return new Livro(l.getId(), l.getTitulo(), l.getAutor(), l.getAno(), l.isDisponivel());
+    }
+
+    private Livro map(ResultSet rs) throws SQLException {
+        return new Livro(
+                rs.getInt("id"),
+                rs.getString("titulo"),
+                rs.getString("autor"),
+                rs.getInt("ano"),
+                rs.getBoolean("disponivel")
+        );
+    }
 }
@@ -0,0 +1,10 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Converte a linha corrente do ResultSet num objeto do modelo
+@FunctionalInterface
+public interface Mapeador<T> {
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,141 @@
+package dao;
+
+import model.Emprestimo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Conjunto de empréstimos atrasados mantido de forma incremental.
+ *
+ * - A primeira verificação lê todos os abertos vencidos (data_devolucao < hoje) pelo índice de vencimento.
+ * - As seguintes só leem a faixa [marca, hoje): empréstimos que venceram desde a última rodada.
+ * - EmprestimoDAO avisa depois do commit quando um empréstimo muda ou sai; além disso cada rodada
+ *   confere os atrasados conhecidos com uma busca por ids, para pegar alterações feitas fora da aplicação.
+ * - Um empréstimo alterado fora da aplicação para um vencimento anterior à marca só aparece
+ *   depois de recarregar().
+ */
+public class MonitorAtrasos {
+    private static final Logger LOG = Logger.getLogger(MonitorAtrasos.class.getName());
+    private static final MonitorAtrasos INSTANCIA = new MonitorAtrasos();
+
+    private final Map<Integer, Emprestimo> atrasados = new HashMap<>();
+    private final Map<Integer, Integer> porUsuario = new HashMap<>();
+    private final Map<Integer, Integer> porLivro = new HashMap<>();
+    private LocalDate marca; // tudo que venceu antes desta data já foi lido
+    private ScheduledExecutorService agendador;
+
+    public static MonitorAtrasos instancia() {
+        return INSTANCIA;
+    }
+
+    // ---------- Varredura ----------
+    public void verificar() {
+        LocalDate hoje = LocalDate.now();
+        LocalDate desde;
+        List<Integer> conhecidos;
+        synchronized (this) {
+            desde = marca;
+            conhecidos = new ArrayList<>(atrasados.keySet());
+        }
+        if (desde != null && !desde.isBefore(hoje) && conhecidos.isEmpty()) return;
+
+        EmprestimoDAO dao = new EmprestimoDAO();
+        List<Emprestimo> novos = desde != null && !desde.isBefore(hoje)
+                ? new ArrayList<>()
+                : dao.listarVencidosEntre(desde, hoje);
+        Map<Integer, Emprestimo> atuais = conhecidos.isEmpty() ? new HashMap<>() : dao.buscarPorIds(conhecidos);
+
+        synchronized (this) {
+            for (int id : conhecidos) {
+                Emprestimo e = atuais.get(id);
+                if (e == null) retirar(id);
+                else atualizar(e, hoje);
+            }
+            for (Emprestimo e : novos) atualizar(e, hoje);
+            if (marca == null || marca.isBefore(hoje)) marca = hoje;
+        }
+    }
+
+    public synchronized void recarregar() {
+        atrasados.clear();
+        porUsuario.clear();
+        porLivro.clear();
+        marca = null;
+        verificar();
+    }
+
+    public synchronized void iniciar(long intervaloMs) {
+        if (agendador != null) return;
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "monitor-atrasos");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                verificar();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Falha ao verificar atrasos", e);
+            }
+        }, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void parar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+            agendador = null;
+        }
+    }
+
+    // ---------- Avisos do EmprestimoDAO (após commit) ----------
+    synchronized void emprestimoAlterado(Emprestimo e) {
+        if (marca == null) return; // ainda não carregado: a primeira varredura lê tudo
+        atualizar(e, LocalDate.now());
+    }
+
+    synchronized void emprestimoRemovido(int id) {
+        retirar(id);
+    }
+
+    // ---------- Consultas ----------
+    public synchronized List<Emprestimo> getAtrasados() {
+        List<Emprestimo> lista = new ArrayList<>(atrasados.values());
+        lista.sort(Comparator.comparing(Emprestimo::getDataDevolucao).thenComparing(Emprestimo::getId));
+        return lista;
+    }
+
+    public synchronized int getTotal() { return atrasados.size(); }
+    public synchronized Map<Integer, Integer> getPorUsuario() { return new HashMap<>(porUsuario); }
+    public synchronized Map<Integer, Integer> getPorLivro() { return new HashMap<>(porLivro); }
+
+    // ---------- Interno ----------
+    private void atualizar(Emprestimo e, LocalDate hoje) {
+        retirar(e.getId());
+        if (e.isAberto() && e.getDataDevolucao().isBefore(hoje)) {
+            atrasados.put(e.getId(), e);
+            porUsuario.merge(e.getUsuarioId(), 1, Integer::sum);
+            porLivro.merge(e.getLivroId(), 1, Integer::sum);
+        }
+    }
+
+    private void retirar(int id) {
+        Emprestimo antigo = atrasados.remove(id);
+        if (antigo == null) return;
+        decrementar(porUsuario, antigo.getUsuarioId());
+        decrementar(porLivro, antigo.getLivroId());
+    }
+
+    private static void decrementar(Map<Integer, Integer> contagem, int chave) {
+        contagem.computeIfPresent(chave, (k, v) -> v == 1 ? null : v - 1);
+    }
+}
@@ -0,0 +1,31 @@
+package dao;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/*
+ * Uma página de uma listagem paginada por chave (keyset).
+ * Para seguir em frente passe getUltimoId() como cursor; para voltar, getPrimeiroId().
+ */
+public class Pagina<T> {
+    private final List<T> itens;
+    private final boolean temAnterior;
+    private final boolean temProxima;
+    private final Integer primeiroId;
+    private final Integer ultimoId;
+
+    public Pagina(List<T> itens, boolean temAnterior, boolean temProxima, ToIntFunction<T> id) {
+        this.itens = Collections.unmodifiableList(itens);
+        this.temAnterior = temAnterior;
+        this.temProxima = temProxima;
+        this.primeiroId = itens.isEmpty() ? null : id.applyAsInt(itens.get(0));
+        this.ultimoId = itens.isEmpty() ? null : id.applyAsInt(itens.get(itens.size() - 1));
+    }
+
+    public List<T> getItens() { return itens; }
+    public boolean isTemAnterior() { return temAnterior; }
+    public boolean isTemProxima() { return temProxima; }
+    public Integer getPrimeiroId() { return primeiroId; }
+    public Integer getUltimoId() { return ultimoId; }
+}
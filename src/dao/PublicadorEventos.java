@@ -0,0 +1,217 @@
+package dao;
+
+import database.Database;
+import model.EventoEmprestimo;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Entrega os eventos da outbox emprestimo_eventos aos assinantes do processo (notificações, análises).
+ *
+ * - Lê os pendentes em lotes de tamanhoLote, em ordem de id, pelo índice (publicado_em, id).
+ * - Ordem por livro: se a entrega de um evento falha, os eventos seguintes do MESMO livro ficam
+ *   para a próxima rodada; os outros livros seguem normalmente.
+ * - Pelo menos uma vez: o evento só é marcado como publicado depois que todos os assinantes
+ *   receberam. Se o processo cair no meio, ele é entregue de novo; assinantes devem ignorar
+ *   ids de evento já vistos.
+ * - Métricas de atraso: pendentes e idade do evento pendente mais antigo, medidas a cada rodada.
+ */
+public class PublicadorEventos {
+    private static final Logger LOG = Logger.getLogger(PublicadorEventos.class.getName());
+    private static final PublicadorEventos INSTANCIA = new PublicadorEventos();
+
+    public interface Assinante {
+        void receber(EventoEmprestimo evento) throws Exception;
+    }
+
+    private final List<Assinante> assinantes = new CopyOnWriteArrayList<>();
+    private volatile int tamanhoLote = 200;
+
+    private final AtomicLong publicados = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private volatile long pendentes;
+    private volatile long atrasoMs;
+    private ScheduledExecutorService agendador;
+
+    public static PublicadorEventos instancia() {
+        return INSTANCIA;
+    }
+
+    // ---------- Configuração ----------
+    public void assinar(Assinante a) { assinantes.add(a); }
+    public void cancelarAssinatura(Assinante a) { assinantes.remove(a); }
+
+    public PublicadorEventos setTamanhoLote(int tamanhoLote) {
+        if (tamanhoLote < 1 || tamanhoLote > ConsultaEmLote.TAMANHO_BLOCO) {
+            throw new IllegalArgumentException("Tamanho de lote deve ficar entre 1 e " + ConsultaEmLote.TAMANHO_BLOCO + ".");
+        }
+        this.tamanhoLote = tamanhoLote;
+        return this;
+    }
+
+    // ---------- Entrega ----------
+    // Entrega o que estiver pendente; retorna quantos eventos foram publicados nesta rodada
+    public synchronized long drenar() {
+        long nestaRodada = 0;
+        while (true) {
+            List<EventoEmprestimo> lote = lerPendentes(tamanhoLote);
+            if (lote.isEmpty()) break;
+
+            Set<Integer> livrosTravados = new HashSet<>();
+            List<Long> entregues = new ArrayList<>();
+            for (EventoEmprestimo ev : lote) {
+                if (livrosTravados.contains(ev.getLivroId())) continue; // não passa na frente do que falhou
+                if (entregar(ev)) entregues.add(ev.getId());
+                else livrosTravados.add(ev.getLivroId());
+            }
+            marcarPublicados(entregues);
+            nestaRodada += entregues.size();
+            // Lote parcial = fila esvaziada; nada entregue = só sobraram livros travados
+            if (lote.size() < tamanhoLote || entregues.isEmpty()) break;
+        }
+        medirAtraso();
+        return nestaRodada;
+    }
+
+    public synchronized void iniciar(long intervaloMs) {
+        if (agendador != null) return;
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "publicador-eventos");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                drenar();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Falha ao publicar eventos de empréstimo", e);
+            }
+        }, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void parar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+            agendador = null;
+        }
+    }
+
+    // Apaga eventos publicados antes de hoje - dias, em blocos para não travar a tabela
+    public long limparPublicados(int dias) {
+        String sql = "DELETE FROM emprestimo_eventos WHERE publicado_em < ? ORDER BY publicado_em, id LIMIT ?";
+        Date limite = Date.valueOf(LocalDate.now().minusDays(dias));
+        long apagados = 0;
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int n;
+            do {
+                ps.setDate(1, limite);
+                ps.setInt(2, ConsultaEmLote.TAMANHO_BLOCO);
+                n = ps.executeUpdate();
+                apagados += n;
+            } while (n == ConsultaEmLote.TAMANHO_BLOCO);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao limpar eventos publicados: " + e.getMessage(), e);
+        }
+        return apagados;
+    }
+
+    // ---------- Métricas ----------
+    public long getPublicados() { return publicados.get(); }
+    public long getFalhas() { return falhas.get(); }
+    public long getPendentes() { return pendentes; }
+    // Idade do evento pendente mais antigo na última rodada (0 = nada pendente)
+    public long getAtrasoMs() { return atrasoMs; }
+
+    @Override
+    public String toString() {
+        return String.format("eventos[publicados=%d, falhas=%d, pendentes=%d, atraso=%dms]",
+                publicados.get(), falhas.get(), pendentes, atrasoMs);
+    }
+
+    // ---------- Interno ----------
+    private boolean entregar(EventoEmprestimo ev) {
+        for (Assinante a : assinantes) {
+            try {
+                a.receber(ev);
+            } catch (Exception e) {
+                falhas.incrementAndGet();
+                LOG.log(Level.WARNING, "Assinante falhou no " + ev + "; nova tentativa na próxima rodada", e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<EventoEmprestimo> lerPendentes(int limite) {
+        String sql = "SELECT id, tipo, id_emprestimo, id_livro, id_usuario, data_devolucao, criado_em "
+                + "FROM emprestimo_eventos WHERE publicado_em IS NULL ORDER BY id LIMIT ?";
+        List<EventoEmprestimo> lista = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Date dev = rs.getDate("data_devolucao");
+                    lista.add(new EventoEmprestimo(
+                            rs.getLong("id"),
+                            EventoEmprestimo.Tipo.valueOf(rs.getString("tipo")),
+                            rs.getInt("id_emprestimo"),
+                            rs.getInt("id_livro"),
+                            rs.getInt("id_usuario"),
+                            dev == null ? null : dev.toLocalDate(),
+                            rs.getTimestamp("criado_em").toLocalDateTime()));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao ler eventos pendentes: " + e.getMessage(), e);
+        }
+        return lista;
+    }
+
+    private void marcarPublicados(List<Long> ids) {
+        if (ids.isEmpty()) return;
+        String sql = "UPDATE emprestimo_eventos SET publicado_em = NOW(3) WHERE id IN (" + Sql.marcadores(ids.size()) + ")";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (long id : ids) ps.setLong(i++, id);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao marcar eventos publicados: " + e.getMessage(), e);
+        }
+        publicados.addAndGet(ids.size());
+    }
+
+    // Idade calculada no próprio banco: criado_em e NOW(3) vêm do mesmo relógio
+    private void medirAtraso() {
+        String sql = "SELECT COUNT(*), TIMESTAMPDIFF(MICROSECOND, MIN(criado_em), NOW(3)) "
+                + "FROM emprestimo_eventos WHERE publicado_em IS NULL";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) {
+                pendentes = rs.getLong(1);
+                atrasoMs = rs.getLong(2) / 1000; // NULL (nada pendente) vira 0
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao medir atraso dos eventos: " + e.getMessage(), e);
+        }
+    }
+}
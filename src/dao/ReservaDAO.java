@@ -0,0 +1,196 @@
+package dao;
+
+import database.Database;
+import database.Transacao;
+import model.Reserva;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * DAO da fila de reservas (sql/007_reservas.sql).
+ * - Só dá para reservar livro emprestado; livro disponível se empresta direto.
+ * - A fila é por livro, em ordem de id (quem reservou antes recebe antes).
+ * - Quem consome a fila é o EmprestimoDAO: ao liberar um livro com fila, o primeiro da fila que
+ *   ainda cabe no limite de empréstimos vira empréstimo no mesmo commit e o livro não chega a
+ *   ficar disponível. A reserva não guarda vaga: quem está no limite é pulado e segue na fila.
+ * - Travas sempre na ordem livro -> reservas (reservar e a liberação do EmprestimoDAO),
+ *   para as duas operações não se cruzarem em deadlock.
+ */
+public class ReservaDAO {
+    private static final int ERRO_CHAVE_DUPLICADA = 1062;
+
+    // ---------- CREATE ----------
+    public Reserva reservar(int livroId, int usuarioId) {
+        String sqlSelectLivro = "SELECT disponivel FROM livros WHERE id = ? FOR UPDATE";
+        String sqlJaComUsuario = "SELECT 1 FROM emprestimos WHERE id_livro = ? AND data_retorno IS NULL AND id_usuario = ?";
+        String sqlInsert = "INSERT INTO reservas (id_livro, id_usuario) VALUES (?, ?)";
+        try {
+            return Transacao.executarComRetentativa("ReservaDAO.reservar", conn -> {
+                // 1) Trava o livro: uma liberação concorrente espera esta reserva entrar na fila
+                try (PreparedStatement ps = conn.prepareStatement(sqlSelectLivro)) {
+                    ps.setInt(1, livroId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) throw new RuntimeException("Livro não encontrado.");
+                        if (rs.getBoolean(1)) throw new RuntimeException("Livro disponível: faça o empréstimo direto.");
+                    }
+                }
+
+                // 2) Quem está com o livro não entra na fila dele (na devolução o livro voltaria para ele)
+                try (PreparedStatement ps = conn.prepareStatement(sqlJaComUsuario)) {
+                    ps.setInt(1, livroId);
+                    ps.setInt(2, usuarioId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) throw new RuntimeException("Usuário já está com este livro emprestado.");
+                    }
+                }
+
+                // 3) Entra no fim da fila
+                int id = 0;
+                try (PreparedStatement ps = conn.prepareStatement(sqlInsert, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, livroId);
+                    ps.setInt(2, usuarioId);
+                    ps.executeUpdate();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) id = rs.getInt(1);
+                    }
+                }
+                return buscarPorId(conn, id);
+            });
+        } catch (SQLIntegrityConstraintViolationException e) {
+            if (e.getErrorCode() == ERRO_CHAVE_DUPLICADA) throw new RuntimeException("Usuário já está na fila deste livro.", e);
+            throw new RuntimeException("Usuário não encontrado.", e); // chave estrangeira de id_usuario
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao reservar livro: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- READ ----------
+    // Fila do livro, do primeiro ao último
+    public List<Reserva> listarFila(int livroId) {
+        List<Reserva> fila = new ArrayList<>();
+        String sql = "SELECT id, id_livro, id_usuario, criada_em FROM reservas WHERE id_livro = ? ORDER BY id";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, livroId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) fila.add(map(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar fila de reservas: " + e.getMessage(), e);
+        }
+        return fila;
+    }
+
+    public List<Reserva> listarPorUsuario(int usuarioId) {
+        List<Reserva> lista = new ArrayList<>();
+        String sql = "SELECT id, id_livro, id_usuario, criada_em FROM reservas WHERE id_usuario = ? ORDER BY id";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, usuarioId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) lista.add(map(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar reservas do usuário: " + e.getMessage(), e);
+        }
+        return lista;
+    }
+
+    // Posição na fila (1 = próximo a receber); 0 se a reserva não existe mais
+    public int posicao(int reservaId) {
+        // COUNT numa faixa do índice (id_livro, id): não varre a tabela
+        String sql = "SELECT COUNT(*) FROM reservas r JOIN reservas minha ON minha.id = ? "
+                + "WHERE r.id_livro = minha.id_livro AND r.id <= minha.id";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, reservaId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao consultar posição da reserva: " + e.getMessage(), e);
+        }
+    }
+
+    public Reserva buscarPorId(int id) {
+        try (Connection conn = Database.getConnection()) {
+            return buscarPorId(conn, id);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar reserva: " + e.getMessage(), e);
+        }
+    }
+
+    private Reserva buscarPorId(Connection conn, int id) throws SQLException {
+        String sql = "SELECT id, id_livro, id_usuario, criada_em FROM reservas WHERE id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? map(rs) : null;
+            }
+        }
+    }
+
+    // ---------- DELETE ----------
+    public void cancelar(int id) {
+        String sql = "DELETE FROM reservas WHERE id = ?";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao cancelar reserva: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- Usados pelo EmprestimoDAO (dentro da transação que libera o livro) ----------
+    /*
+     * Tira da fila o primeiro que ainda cabe no limite de empréstimos, já ocupando a vaga dele
+     * (UsuarioDAO.tentarOcuparVaga). Quem está no limite é pulado e continua na mesma posição.
+     * null se ninguém da fila pode receber o livro. O livro já deve estar travado.
+     */
+    static Reserva retirarPrimeiraComVaga(Connection conn, int livroId) throws SQLException {
+        String sqlFila = "SELECT id, id_livro, id_usuario, criada_em FROM reservas WHERE id_livro = ? ORDER BY id FOR UPDATE";
+        List<Reserva> fila = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sqlFila)) {
+            ps.setInt(1, livroId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) fila.add(map(rs));
+            }
+        }
+        for (Reserva r : fila) {
+            if (!UsuarioDAO.tentarOcuparVaga(conn, r.getUsuarioId())) continue; // travas livro -> reservas -> usuarios
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM reservas WHERE id = ?")) {
+                ps.setInt(1, r.getId());
+                ps.executeUpdate();
+            }
+            return r;
+        }
+        return null;
+    }
+
+    // Quais destes livros têm alguém na fila (uma consulta para o lote inteiro)
+    static Set<Integer> livrosComFila(Connection conn, Collection<Integer> livroIds) throws SQLException {
+        Set<Integer> comFila = new HashSet<>();
+        if (livroIds.isEmpty()) return comFila;
+        String sql = "SELECT DISTINCT id_livro FROM reservas WHERE id_livro IN (" + Sql.marcadores(livroIds.size()) + ")";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int id : livroIds) ps.setInt(i++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) comFila.add(rs.getInt(1));
+            }
+        }
+        return comFila;
+    }
+
+    // ---------- Helper ----------
+    private static Reserva map(ResultSet rs) throws SQLException {
+        return new Reserva(rs.getInt("id"), rs.getInt("id_livro"), rs.getInt("id_usuario"),
+                rs.getTimestamp("criada_em").toLocalDateTime());
+    }
+}
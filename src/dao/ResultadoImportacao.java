@@ -0,0 +1,68 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Resultado de ImportadorLivros.importar: ids gerados (na ordem do arquivo), linhas recusadas e vazão.
+ *
+ * Se a importação parou no meio, getFalha() traz o erro e o resto descreve o que já foi confirmado:
+ * as linhas até getUltimaLinhaGravada() estão no banco, e o arquivo pode ser retomado da seguinte.
+ */
+public class ResultadoImportacao {
+
+    public static class Rejeicao {
+        private final long linha;
+        private final String conteudo;
+        private final String motivo;
+
+        public Rejeicao(long linha, String conteudo, String motivo) {
+            this.linha = linha;
+            this.conteudo = conteudo;
+            this.motivo = motivo;
+        }
+
+        public long getLinha() { return linha; }
+        public String getConteudo() { return conteudo; }
+        public String getMotivo() { return motivo; }
+
+        @Override
+        public String toString() {
+            return "linha " + linha + ": " + motivo + " -> " + conteudo;
+        }
+    }
+
+    private final List<Integer> idsGerados = new ArrayList<>();
+    private final List<Rejeicao> rejeicoes = new ArrayList<>();
+    private long linhasLidas;
+    private long duracaoMs;
+    private long ultimaLinhaGravada; // 0 = nada gravado
+    private RuntimeException falha;
+
+    void adicionarId(int id) { idsGerados.add(id); }
+    void adicionarRejeicao(Rejeicao r) { rejeicoes.add(r); }
+    void setLinhasLidas(long linhasLidas) { this.linhasLidas = linhasLidas; }
+    void setDuracaoMs(long duracaoMs) { this.duracaoMs = duracaoMs; }
+    void setUltimaLinhaGravada(long linha) { this.ultimaLinhaGravada = linha; }
+    void setFalha(RuntimeException falha) { this.falha = falha; }
+
+    public List<Integer> getIdsGerados() { return Collections.unmodifiableList(idsGerados); }
+    public List<Rejeicao> getRejeicoes() { return Collections.unmodifiableList(rejeicoes); }
+    public long getLinhasLidas() { return linhasLidas; }
+    public long getDuracaoMs() { return duracaoMs; }
+    public long getUltimaLinhaGravada() { return ultimaLinhaGravada; }
+    public RuntimeException getFalha() { return falha; }
+    public boolean isCompleta() { return falha == null; }
+
+    public double getLinhasPorSegundo() {
+        return duracaoMs == 0 ? 0 : linhasLidas * 1000.0 / duracaoMs;
+    }
+
+    @Override
+    public String toString() {
+        String s = String.format("importacao[lidas=%d, inseridas=%d, recusadas=%d, %.0f linhas/s]",
+                linhasLidas, idsGerados.size(), rejeicoes.size(), getLinhasPorSegundo());
+        return falha == null ? s : s + " interrompida após a linha " + ultimaLinhaGravada + ": " + falha.getMessage();
+    }
+}
@@ -0,0 +1,41 @@
+package dao;
+
+import model.Emprestimo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Resultado de EmprestimoDAO.salvarLote: o que foi gravado e o que foi recusado (com o motivo).
+ */
+public class ResultadoLote {
+
+    public static class Falha {
+        private final Emprestimo emprestimo;
+        private final String motivo;
+
+        public Falha(Emprestimo emprestimo, String motivo) {
+            this.emprestimo = emprestimo;
+            this.motivo = motivo;
+        }
+
+        public Emprestimo getEmprestimo() { return emprestimo; }
+        public String getMotivo() { return motivo; }
+
+        @Override
+        public String toString() {
+            return "livro " + emprestimo.getLivroId() + ": " + motivo;
+        }
+    }
+
+    private final List<Emprestimo> salvos = new ArrayList<>();
+    private final List<Falha> falhas = new ArrayList<>();
+
+    void adicionarSalvo(Emprestimo e) { salvos.add(e); }
+    void adicionarFalha(Emprestimo e, String motivo) { falhas.add(new Falha(e, motivo)); }
+
+    public List<Emprestimo> getSalvos() { return Collections.unmodifiableList(salvos); }
+    public List<Falha> getFalhas() { return Collections.unmodifiableList(falhas); }
+    public boolean temFalhas() { return !falhas.isEmpty(); }
+}
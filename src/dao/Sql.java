@@ -0,0 +1,16 @@
+package dao;
+
+// Pequenos utilitários de montagem de SQL usados pelos DAOs
+final class Sql {
+    private Sql() {}
+
+    // "?, ?, ?" para listas IN (...)
+    static String marcadores(int n) {
+        StringBuilder sb = new StringBuilder(n * 3);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+}
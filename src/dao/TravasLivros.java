@@ -0,0 +1,141 @@
+package dao;
+
+import database.Database;
+import database.Transacao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Travas em memória por livro (listradas: LISTRAS travas fixas, o livro cai numa delas pelo id).
+ *
+ * Disputas pelo mesmo livro esperam aqui, sem conexão do pool na mão, em vez de esperar no
+ * SELECT ... FOR UPDATE segurando uma conexão. Antes e depois de pegar a trava o bitmap de
+ * DisponibilidadeLivros é consultado: se ele diz que o livro está emprestado, uma leitura simples
+ * de livros.disponivel (pela chave, sem trava nem transação) confirma e o pedido é recusado sem
+ * disputar a linha. O banco continua sendo quem garante a regra; isto só corta espera.
+ *
+ * O bit "emprestado" é só um indício: só o próprio processo atualiza o bitmap depois dos commits,
+ * então devoluções feitas em outro terminal ou por SQL direto o deixam velho. Por isso ele nunca
+ * recusa sozinho; quando a confirmação acha o livro disponível, o bit é corrigido na hora.
+ *
+ * - A trava vale por tentativa (Transacao.executarComRetentativa com Envolvente): na espera entre
+ *   uma tentativa e outra ela fica solta e os outros livros da mesma listra seguem.
+ * - Se ninguém carregou o bitmap antes, a primeira consulta dispara a carga numa thread à parte;
+ *   até ela terminar os pedidos vão direto ao banco. Se a carga falhar, a próxima tentativa só
+ *   acontece depois de ESPERA_APOS_FALHA_MS (um banco fora do ar não recebe uma varredura por pedido).
+ * - setAtivas(false) (via EmprestimoDAO.setTravasEmMemoria) desliga trava e recusa rápida, para
+ *   medir só as estratégias de banco (bench.BenchmarkEmprestimo).
+ *
+ * Dentro de uma Transacao já aberta nada disso é feito: a transação pode estar segurando travas
+ * de linha no banco, e esperar numa trava da JVM ali poderia formar um deadlock que o MySQL não vê.
+ * Também o bitmap só muda depois do commit, então dentro da transação ele pode estar atrasado.
+ */
+final class TravasLivros {
+    private static final Logger LOG = Logger.getLogger(TravasLivros.class.getName());
+    private static final int LISTRAS = 256; // potência de 2
+    private static final ReentrantLock[] TRAVAS = new ReentrantLock[LISTRAS];
+    private static final AtomicLong RECUSADOS = new AtomicLong();
+    private static final AtomicBoolean CARGA_PEDIDA = new AtomicBoolean();
+    private static final long ESPERA_APOS_FALHA_MS = 30_000;
+    private static volatile long ultimaFalhaCarga; // System.currentTimeMillis() da última carga que falhou
+    private static volatile boolean ativas = true;
+
+    static {
+        for (int i = 0; i < LISTRAS; i++) TRAVAS[i] = new ReentrantLock();
+    }
+
+    private TravasLivros() {}
+
+    /*
+     * Envolvente para Transacao.executarComRetentativa: cada tentativa roda com a trava do livro.
+     * mensagemIndisponivel != null liga a recusa rápida pelo bitmap.
+     * A trava é solta só depois que a tentativa retorna, ou seja, depois do commit e dos avisos
+     * pós-commit: quem estava esperando já encontra o bitmap atualizado.
+     */
+    static Transacao.Envolvente doLivro(int livroId, String mensagemIndisponivel) {
+        return new Transacao.Envolvente() {
+            @Override
+            public <T> T executar(Transacao.Tentativa<T> tentativa) throws SQLException {
+                if (!ativas || Transacao.ativa()) return tentativa.executar();
+
+                recusarSeIndisponivel(livroId, mensagemIndisponivel);
+                ReentrantLock trava = TRAVAS[listra(livroId)];
+                trava.lock();
+                try {
+                    recusarSeIndisponivel(livroId, mensagemIndisponivel); // o vencedor anterior pode ter levado o livro
+                    return tentativa.executar();
+                } finally {
+                    trava.unlock();
+                }
+            }
+        };
+    }
+
+    // Recusa sem trava nem banco (fila de CommitEmGrupo); fora de transação apenas
+    static void recusarSeIndisponivel(int livroId, String mensagem) {
+        if (mensagem == null || !ativas || Transacao.ativa()) return;
+        DisponibilidadeLivros bitmap = DisponibilidadeLivros.instancia();
+        if (!bitmap.isCarregado()) {
+            carregarBitmap(bitmap);
+            return;
+        }
+        if (Boolean.FALSE.equals(bitmap.estaDisponivel(livroId)) && confirmarIndisponivel(livroId)) {
+            RECUSADOS.incrementAndGet();
+            throw new RuntimeException(mensagem);
+        }
+    }
+
+    // Confere o bit "emprestado" no banco; se o livro estiver disponível, corrige o bitmap e deixa passar
+    private static boolean confirmarIndisponivel(int livroId) {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT disponivel FROM livros WHERE id = ?")) {
+            ps.setInt(1, livroId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return false; // livro não existe: a estratégia responde com a mensagem certa
+                if (!rs.getBoolean(1)) return true;
+            }
+        } catch (SQLException | RuntimeException e) {
+            return false; // na dúvida não recusa: a transação decide
+        }
+        DisponibilidadeLivros.instancia().definir(livroId, true);
+        return false;
+    }
+
+    static long getRecusados() {
+        return RECUSADOS.get();
+    }
+
+    static void setAtivas(boolean valor) {
+        ativas = valor;
+    }
+
+    // Uma carga só por processo, fora da thread do pedido; depois de uma falha, espera antes de tentar de novo
+    private static void carregarBitmap(DisponibilidadeLivros bitmap) {
+        if (System.currentTimeMillis() - ultimaFalhaCarga < ESPERA_APOS_FALHA_MS) return;
+        if (!CARGA_PEDIDA.compareAndSet(false, true)) return;
+        Thread t = new Thread(() -> {
+            try {
+                bitmap.carregar();
+            } catch (RuntimeException e) {
+                ultimaFalhaCarga = System.currentTimeMillis();
+                CARGA_PEDIDA.set(false); // tenta de novo num pedido depois da espera
+                LOG.log(Level.WARNING, "Falha ao carregar disponibilidade dos livros; seguindo sem recusa rápida", e);
+            }
+        }, "disponibilidade-carga");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Espalha ids consecutivos entre as listras
+    private static int listra(int livroId) {
+        return (livroId * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(LISTRAS));
+    }
+}
@@ -0,0 +1,389 @@
+package dao;
+
+import database.Database;
+import database.Transacao;
+import model.Usuario;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * DAO de usuários.
+ * Além do CRUD, os acessos do balcão:
+ * - buscarPorEmail: índice único em usuarios.email (sql/002_indices_usuarios.sql);
+ * - buscarPorPrefixoNome: LIKE 'prefixo%' sobre o índice de nome;
+ * - buscarPorIds: vários usuários em poucas consultas IN (ver ConsultaEmLote), para listas de empréstimos.
+ * buscarPorId e buscarPorIds passam por um cache pequeno, invalidado em atualizar/deletar.
+ *
+ * usuarios.emprestimos_abertos (sql/010_contador_emprestimos.sql) é mantido pelo EmprestimoDAO na
+ * mesma transação de cada empréstimo/devolução; o limite é conferido no próprio UPDATE
+ * (... WHERE emprestimos_abertos < limite), sem COUNT(*) em emprestimos. Ele fica fora do cache e
+ * do model: muda a cada empréstimo. recalcularEmprestimosAbertos() corrige desvios.
+ */
+public class UsuarioDAO {
+
+    private static final CacheLeitura<Integer, Usuario> CACHE = new CacheLeitura<>(1_000, 10 * 60_000);
+
+    public static final int LIMITE_EMPRESTIMOS_PADRAO = 5;
+    private static final int TAMANHO_FAIXA_REPARO = 1_000;
+    private static final int THREADS_REPARO = 4;
+    private static volatile int limiteEmprestimos = LIMITE_EMPRESTIMOS_PADRAO;
+
+    // ---------- CREATE ----------
+    public void salvar(Usuario u) {
+        String sql = "INSERT INTO usuarios (nome, email, telefone) VALUES (?, ?, ?)";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            stmt.setString(1, u.getNome());
+            stmt.setString(2, u.getEmail());
+            stmt.setString(3, u.getTelefone());
+            stmt.executeUpdate();
+
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                if (rs.next()) u.setId(rs.getInt(1));
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new RuntimeException("Já existe um usuário com este e-mail.", e);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao salvar usuário: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- READ ----------
+    public List<Usuario> listar() {
+        List<Usuario> usuarios = new ArrayList<>();
+        String sql = "SELECT id, nome, email, telefone FROM usuarios ORDER BY nome";
+        try (Connection conn = Database.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                usuarios.add(map(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar usuários: " + e.getMessage(), e);
+        }
+        return usuarios;
+    }
+
+    public Usuario buscarPorId(int id) {
+        Usuario u = Transacao.ativa() ? buscarNoBanco(id) : CACHE.obter(id, this::buscarNoBanco);
+        return u == null ? null : copiar(u);
+    }
+
+    private Usuario buscarNoBanco(int id) {
+        String sql = "SELECT id, nome, email, telefone FROM usuarios WHERE id = ?";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? map(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar usuário: " + e.getMessage(), e);
+        }
+    }
+
+    public Usuario buscarPorEmail(String email) {
+        String sql = "SELECT id, nome, email, telefone FROM usuarios WHERE email = ?";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? map(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar usuário por e-mail: " + e.getMessage(), e);
+        }
+    }
+
+    // Nomes que começam com o prefixo, em ordem alfabética
+    public List<Usuario> buscarPorPrefixoNome(String prefixo, int limite) {
+        List<Usuario> usuarios = new ArrayList<>();
+        String sql = "SELECT id, nome, email, telefone FROM usuarios WHERE nome LIKE ? ESCAPE '!' ORDER BY nome LIMIT ?";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, escaparLike(prefixo) + "%");
+            stmt.setInt(2, limite);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    usuarios.add(map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar usuários por nome: " + e.getMessage(), e);
+        }
+        return usuarios;
+    }
+
+    // id -> usuário; ids inexistentes ficam de fora do mapa
+    public Map<Integer, Usuario> buscarPorIds(Collection<Integer> ids) {
+        Map<Integer, Usuario> resultado = new HashMap<>();
+        if (ids.isEmpty()) return resultado;
+        Set<Integer> distintos = new LinkedHashSet<>(ids);
+        Map<Integer, Usuario> encontrados = Transacao.ativa()
+                ? buscarNoBanco(distintos)
+                : CACHE.obterTodos(distintos, this::buscarNoBanco);
+        for (Map.Entry<Integer, Usuario> en : encontrados.entrySet()) {
+            resultado.put(en.getKey(), copiar(en.getValue()));
+        }
+        return resultado;
+    }
+
+    private Map<Integer, Usuario> buscarNoBanco(Collection<Integer> ids) {
+        return ConsultaEmLote.buscarPorIds("SELECT id, nome, email, telefone FROM usuarios WHERE id IN (%s)",
+                ids, this::map, Usuario::getId);
+    }
+
+    // ---------- UPDATE ----------
+    public void atualizar(Usuario u) {
+        String sql = "UPDATE usuarios SET nome = ?, email = ?, telefone = ? WHERE id = ?";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, u.getNome());
+            stmt.setString(2, u.getEmail());
+            stmt.setString(3, u.getTelefone());
+            stmt.setInt(4, u.getId());
+            stmt.executeUpdate();
+            usuarioAlterado(u.getId());
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new RuntimeException("Já existe um usuário com este e-mail.", e);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao atualizar usuário: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- DELETE ----------
+    public void deletar(int id) {
+        String sql = "DELETE FROM usuarios WHERE id = ?";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, id);
+            stmt.executeUpdate();
+            usuarioAlterado(id);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new RuntimeException("Usuário possui empréstimos e não pode ser excluído.", e);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao deletar usuário: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- Contador de empréstimos abertos ----------
+    public static int getLimiteEmprestimos() { return limiteEmprestimos; }
+    public static void setLimiteEmprestimos(int limite) { limiteEmprestimos = limite; }
+
+    public int emprestimosAbertos(int usuarioId) {
+        String sql = "SELECT emprestimos_abertos FROM usuarios WHERE id = ?";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, usuarioId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) throw new RuntimeException("Usuário não encontrado.");
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao consultar empréstimos do usuário: " + e.getMessage(), e);
+        }
+    }
+
+    // +1 só se o usuário estiver abaixo do limite (UPDATE condicional: a trava da linha serializa os pedidos)
+    static void ocuparVaga(Connection conn, int usuarioId) throws SQLException {
+        int limite = limiteEmprestimos;
+        if (tentarOcuparVaga(conn, usuarioId, limite)) return;
+        // Nada mudou: usuário inexistente ou já no limite
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM usuarios WHERE id = ?")) {
+            ps.setInt(1, usuarioId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new RuntimeException("Usuário não encontrado.");
+            }
+        }
+        throw new RuntimeException("Usuário já tem " + limite + " empréstimos abertos (limite).");
+    }
+
+    // Mesmo UPDATE condicional, sem exceção: false se o usuário não existe ou está no limite
+    static boolean tentarOcuparVaga(Connection conn, int usuarioId) throws SQLException {
+        return tentarOcuparVaga(conn, usuarioId, limiteEmprestimos);
+    }
+
+    private static boolean tentarOcuparVaga(Connection conn, int usuarioId, int limite) throws SQLException {
+        String sql = "UPDATE usuarios SET emprestimos_abertos = emprestimos_abertos + 1 WHERE id = ? AND emprestimos_abertos < ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, usuarioId);
+            ps.setInt(2, limite);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    // Sem conferir limite (devoluções e correções)
+    static void somarEmprestimos(Connection conn, int usuarioId, int quantidade) throws SQLException {
+        String sql = "UPDATE usuarios SET emprestimos_abertos = GREATEST(emprestimos_abertos + ?, 0) WHERE id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, quantidade);
+            ps.setInt(2, usuarioId);
+            ps.executeUpdate();
+        }
+    }
+
+    // Vários usuários de uma vez (lotes do balcão): usuário -> quantidade a somar (negativa nas devoluções)
+    static void somarEmprestimos(Connection conn, Map<Integer, Integer> porUsuario) throws SQLException {
+        if (porUsuario.isEmpty()) return;
+        String sql = "UPDATE usuarios SET emprestimos_abertos = GREATEST(emprestimos_abertos + ?, 0) WHERE id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Map.Entry<Integer, Integer> en : new TreeMap<>(porUsuario).entrySet()) { // ordem de id: sem deadlock
+                ps.setInt(1, en.getValue());
+                ps.setInt(2, en.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // Trava os usuários (ordem de id) e devolve usuário -> empréstimos abertos
+    static Map<Integer, Integer> travarContadores(Connection conn, Collection<Integer> ids) throws SQLException {
+        Map<Integer, Integer> abertos = new HashMap<>();
+        if (ids.isEmpty()) return abertos;
+        String sql = "SELECT id, emprestimos_abertos FROM usuarios WHERE id IN (" + Sql.marcadores(ids.size()) + ") ORDER BY id FOR UPDATE";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int id : ids) ps.setInt(i++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) abertos.put(rs.getInt(1), rs.getInt(2));
+            }
+        }
+        return abertos;
+    }
+
+    /*
+     * Recalcula emprestimos_abertos a partir de emprestimos, em faixas de TAMANHO_FAIXA_REPARO ids
+     * processadas em paralelo (uma transação curta por faixa). Retorna quantos contadores estavam errados.
+     *
+     * Em cada faixa: trava as linhas de usuarios (FOR UPDATE) e só então conta os empréstimos com uma
+     * leitura sem trava. Quem está no meio de um empréstimo/devolução ainda vai mexer no contador
+     * depois que a faixa liberar, então a contagem sem a mudança dele continua certa.
+     */
+    public long recalcularEmprestimosAbertos() {
+        int[] limites = faixaDeIds();
+        if (limites == null) return 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_REPARO, r -> {
+            Thread t = new Thread(r, "reparo-contadores");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<CompletableFuture<Integer>> tarefas = new ArrayList<>();
+            for (long de = limites[0]; de <= limites[1]; de += TAMANHO_FAIXA_REPARO) {
+                int inicio = (int) de;
+                int fim = (int) Math.min(limites[1], de + TAMANHO_FAIXA_REPARO - 1);
+                tarefas.add(CompletableFuture.supplyAsync(() -> repararFaixa(inicio, fim), executor));
+            }
+            long corrigidos = 0;
+            for (CompletableFuture<Integer> t : tarefas) corrigidos += t.join();
+            return corrigidos;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int[] faixaDeIds() {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT MIN(id), MAX(id) FROM usuarios");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            int min = rs.getInt(1);
+            return rs.wasNull() ? null : new int[]{min, rs.getInt(2)};
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao ler faixa de usuários: " + e.getMessage(), e);
+        }
+    }
+
+    private int repararFaixa(int inicio, int fim) {
+        String sqlTravar = "SELECT id, emprestimos_abertos FROM usuarios WHERE id BETWEEN ? AND ? FOR UPDATE";
+        String sqlContar = "SELECT id_usuario, COUNT(*) FROM emprestimos "
+                + "WHERE id_usuario BETWEEN ? AND ? AND data_retorno IS NULL GROUP BY id_usuario";
+        String sqlCorrigir = "UPDATE usuarios SET emprestimos_abertos = ? WHERE id = ?";
+        try {
+            return Transacao.executarComRetentativa("UsuarioDAO.recalcularEmprestimosAbertos", conn -> {
+                Map<Integer, Integer> gravados = new TreeMap<>();
+                try (PreparedStatement ps = conn.prepareStatement(sqlTravar)) {
+                    ps.setInt(1, inicio);
+                    ps.setInt(2, fim);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) gravados.put(rs.getInt(1), rs.getInt(2));
+                    }
+                }
+                if (gravados.isEmpty()) return 0;
+
+                Map<Integer, Integer> reais = new HashMap<>();
+                try (PreparedStatement ps = conn.prepareStatement(sqlContar)) {
+                    ps.setInt(1, inicio);
+                    ps.setInt(2, fim);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) reais.put(rs.getInt(1), rs.getInt(2));
+                    }
+                }
+
+                int corrigidos = 0;
+                try (PreparedStatement ps = conn.prepareStatement(sqlCorrigir)) {
+                    for (Map.Entry<Integer, Integer> en : gravados.entrySet()) {
+                        int real = reais.getOrDefault(en.getKey(), 0);
+                        if (real == en.getValue()) continue;
+                        ps.setInt(1, real);
+                        ps.setInt(2, en.getKey());
+                        ps.addBatch();
+                        corrigidos++;
+                    }
+                    if (corrigidos > 0) ps.executeBatch();
+                }
+                return corrigidos;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao recalcular empréstimos abertos: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- Cache ----------
+    public static CacheLeitura<Integer, Usuario> cacheUsuarios() { return CACHE; }
+
+    static void usuarioAlterado(int id) {
+        Transacao.aposCommit(() -> CACHE.invalidar(id));
+    }
+
+    // ---------- Helpers ----------
+    private static String escaparLike(String texto) {
+        return texto.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private static Usuario copiar(Usuario u) {
+        return new Usuario(u.getId(), u.getNome(), u.getEmail(), u.getTelefone());
+    }
+
+    private Usuario map(ResultSet rs) throws SQLException {
+        Usuario u = new Usuario();
+        u.setId(rs.getInt("id"));
+        u.setNome(rs.getString("nome"));
+        u.setEmail(rs.getString("email"));
+        u.setTelefone(rs.getString("telefone"));
+        return u;
+    }
+}
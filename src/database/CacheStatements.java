@@ -0,0 +1,183 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Cache de PreparedStatement de uma conexão física do pool, chaveado pelo texto do SQL.
+ *
+ * - O DAO continua chamando prepareStatement(...) e fechando no try-with-resources;
+ *   o close() só limpa os parâmetros e devolve o statement para o cache.
+ * - Limitado por tamanho, com descarte do menos usado recentemente (LRU).
+ * - Se o mesmo SQL já estiver em uso na conexão (ex.: chamada aninhada), prepara um avulso.
+ *
+ * Uma conexão só é usada por uma thread por vez, então não há sincronização aqui.
+ */
+class CacheStatements {
+    static final AtomicLong ACERTOS = new AtomicLong();
+    static final AtomicLong FALTAS = new AtomicLong();
+
+    private final Connection conexao;
+    private final int capacidade;
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+
+    CacheStatements(Connection conexao, int capacidade) {
+        this.conexao = conexao;
+        this.capacidade = capacidade;
+    }
+
+    PreparedStatement preparar(String sql, Connection dono) throws SQLException {
+        return preparar(sql, null, dono);
+    }
+
+    PreparedStatement preparar(String sql, Integer chavesGeradas, Connection dono) throws SQLException {
+        String chave = chavesGeradas == null ? sql : chavesGeradas + "|" + sql;
+        Entrada e = entradas.get(chave);
+        if (e != null && e.descartada) {
+            entradas.remove(chave);
+            e = null;
+        }
+        if (e != null && !e.emUso) {
+            ACERTOS.incrementAndGet();
+            e.emUso = true;
+            return e.novoProxy(dono);
+        }
+        FALTAS.incrementAndGet();
+
+        PreparedStatement ps = chavesGeradas == null
+                ? conexao.prepareStatement(sql)
+                : conexao.prepareStatement(sql, chavesGeradas);
+        if (e != null) {
+            return avulso(ps, dono); // a versão em cache está ocupada
+        }
+
+        Entrada nova = new Entrada(ps);
+        nova.emUso = true;
+        entradas.put(chave, nova);
+        descartarExcedentes();
+        return nova.novoProxy(dono);
+    }
+
+    private void descartarExcedentes() {
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (entradas.size() > capacidade && it.hasNext()) {
+            Entrada velha = it.next();
+            it.remove();
+            velha.descartada = true;
+            if (!velha.emUso) fecharSilencioso(velha.fisico);
+        }
+    }
+
+    // Statements que ficaram abertos quando a conexão voltou ao pool não são confiáveis
+    void aoDevolverConexao() {
+        List<String> remover = new ArrayList<>();
+        for (Map.Entry<String, Entrada> en : entradas.entrySet()) {
+            if (en.getValue().emUso) remover.add(en.getKey());
+        }
+        for (String chave : remover) {
+            Entrada e = entradas.remove(chave);
+            e.descartada = true;
+            e.emUso = false;
+            fecharSilencioso(e.fisico);
+        }
+    }
+
+    private PreparedStatement avulso(PreparedStatement ps, Connection dono) {
+        Entrada e = new Entrada(ps);
+        e.descartada = true; // não volta para o cache: o close() fecha de verdade
+        e.emUso = true;
+        return e.novoProxy(dono);
+    }
+
+    private static void fecharSilencioso(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignorada) {
+            // a conexão pode já ter sido fechada
+        }
+    }
+
+    private static final class Entrada {
+        final PreparedStatement fisico;
+        boolean emUso;
+        boolean descartada;
+
+        Entrada(PreparedStatement fisico) {
+            this.fisico = fisico;
+        }
+
+        PreparedStatement novoProxy(Connection dono) {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementEmprestado(this, dono));
+        }
+    }
+
+    private static final class StatementEmprestado implements InvocationHandler {
+        private final Entrada entrada;
+        private final Connection dono;
+        private boolean fechado;
+
+        StatementEmprestado(Entrada entrada, Connection dono) {
+            this.entrada = entrada;
+            this.dono = dono;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!fechado) {
+                        fechado = true;
+                        liberar();
+                    }
+                    return null;
+                case "isClosed":
+                    return fechado;
+                case "getConnection":
+                    return dono;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (fechado) throw new SQLException("Statement já foi fechado.");
+            try {
+                return method.invoke(entrada.fisico, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void liberar() throws SQLException {
+            if (entrada.descartada) {
+                entrada.emUso = false;
+                entrada.fisico.close();
+                return;
+            }
+            try {
+                entrada.fisico.clearParameters();
+                entrada.fisico.clearBatch();
+                entrada.emUso = false;
+            } catch (SQLException e) {
+                entrada.descartada = true; // o cache remove a entrada no próximo acesso
+                entrada.emUso = false;
+                fecharSilencioso(entrada.fisico);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package database;
+
+/*
+ * Parâmetros do pool de conexões.
+ * Os valores padrão atendem o balcão de empréstimos; ajuste olhando Database.estatisticasPool().
+ */
+public class ConfiguracaoPool {
+    private int tamanhoMinimo = 2;
+    private int tamanhoMaximo = 10;
+    private long timeoutAquisicaoMs = 5_000;     // quanto tempo esperar por uma conexão livre
+    private long tempoOciosoMaxMs = 5 * 60_000;  // conexões ociosas acima do mínimo são fechadas depois disso
+    private long vidaMaximaMs = 30 * 60_000;     // recicla a conexão física depois desse tempo
+    private int timeoutValidacaoSeg = 2;         // usado em Connection.isValid ao emprestar
+    private long limiteVazamentoMs = 60_000;     // 0 desliga a detecção de vazamento
+    private long intervaloManutencaoMs = 30_000;
+    private int tamanhoCacheStatements = 32;     // por conexão física; 0 desliga o cache
+
+    public int getTamanhoMinimo() { return tamanhoMinimo; }
+    public ConfiguracaoPool setTamanhoMinimo(int tamanhoMinimo) { this.tamanhoMinimo = tamanhoMinimo; return this; }
+
+    public int getTamanhoMaximo() { return tamanhoMaximo; }
+    public ConfiguracaoPool setTamanhoMaximo(int tamanhoMaximo) { this.tamanhoMaximo = tamanhoMaximo; return this; }
+
+    public long getTimeoutAquisicaoMs() { return timeoutAquisicaoMs; }
+    public ConfiguracaoPool setTimeoutAquisicaoMs(long timeoutAquisicaoMs) { this.timeoutAquisicaoMs = timeoutAquisicaoMs; return this; }
+
+    public long getTempoOciosoMaxMs() { return tempoOciosoMaxMs; }
+    public ConfiguracaoPool setTempoOciosoMaxMs(long tempoOciosoMaxMs) { this.tempoOciosoMaxMs = tempoOciosoMaxMs; return this; }
+
+    public long getVidaMaximaMs() { return vidaMaximaMs; }
+    public ConfiguracaoPool setVidaMaximaMs(long vidaMaximaMs) { this.vidaMaximaMs = vidaMaximaMs; return this; }
+
+    public int getTimeoutValidacaoSeg() { return timeoutValidacaoSeg; }
+    public ConfiguracaoPool setTimeoutValidacaoSeg(int timeoutValidacaoSeg) { this.timeoutValidacaoSeg = timeoutValidacaoSeg; return this; }
+
+    public long getLimiteVazamentoMs() { return limiteVazamentoMs; }
+    public ConfiguracaoPool setLimiteVazamentoMs(long limiteVazamentoMs) { this.limiteVazamentoMs = limiteVazamentoMs; return this; }
+
+    public long getIntervaloManutencaoMs() { return intervaloManutencaoMs; }
+    public ConfiguracaoPool setIntervaloManutencaoMs(long intervaloManutencaoMs) { this.intervaloManutencaoMs = intervaloManutencaoMs; return this; }
+
+    public int getTamanhoCacheStatements() { return tamanhoCacheStatements; }
+    public ConfiguracaoPool setTamanhoCacheStatements(int tamanhoCacheStatements) { this.tamanhoCacheStatements = tamanhoCacheStatements; return this; }
+}
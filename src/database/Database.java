@@ -1,19 +1,59 @@
-package database;                    
+package database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 
 public class Database {
     private static final String URL =
-        "jdbc:mysql://localhost:3306/biblioteca?useSSL=false&serverTimezone=UTC";
+        "jdbc:mysql://localhost:3306/biblioteca?useSSL=false&serverTimezone=UTC&useServerPrepStmts=true&rewriteBatchedStatements=true";
     private static final String USER = "root";
     private static final String PASSWORD = ""; // coloque a senha se tiver
 
+    private static final ConfiguracaoPool CONFIG = new ConfiguracaoPool();
+    private static volatile PoolConexoes pool;
+
+    // Conexão vinda do pool: o close() do DAO devolve a conexão em vez de fechar o socket.
+    // Dentro de Transacao.executar(...) devolve a conexão da transação corrente.
     public static Connection getConnection() {
+        Connection atual = Transacao.conexaoAtual();
+        if (atual != null) return atual;
+        return obterDoPool();
+    }
+
+    static Connection obterDoPool() {
         try {
-            return DriverManager.getConnection(URL, USER, PASSWORD);
+            return pool().obter();
         } catch (Exception e) {
             throw new RuntimeException("Erro ao conectar: " + e.getMessage(), e);
         }
     }
+
+    public static EstatisticasPool estatisticasPool() {
+        return pool().estatisticas();
+    }
+
+    // Só tem efeito antes da primeira conexão
+    public static ConfiguracaoPool configuracaoPool() {
+        return CONFIG;
+    }
+
+    public static synchronized void fecharPool() {
+        if (pool != null) {
+            pool.fechar();
+            pool = null;
+        }
+    }
+
+    private static PoolConexoes pool() {
+        PoolConexoes p = pool;
+        if (p == null) {
+            synchronized (Database.class) {
+                p = pool;
+                if (p == null) {
+                    p = new PoolConexoes(URL, USER, PASSWORD, CONFIG);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
 }
@@ -0,0 +1,57 @@
+package database;
+
+/*
+ * Fotografia dos contadores do pool num instante.
+ */
+public class EstatisticasPool {
+    private final int total;
+    private final int emUso;
+    private final int ociosas;
+    private final int aguardando;
+    private final long criadas;
+    private final long destruidas;
+    private final long aquisicoes;
+    private final long timeouts;
+    private final long vazamentos;
+    private final double tempoMedioAquisicaoMs;
+    private final long acertosStatements;
+    private final long faltasStatements;
+
+    public EstatisticasPool(int total, int emUso, int ociosas, int aguardando, long criadas, long destruidas,
+                            long aquisicoes, long timeouts, long vazamentos, double tempoMedioAquisicaoMs,
+                            long acertosStatements, long faltasStatements) {
+        this.total = total;
+        this.emUso = emUso;
+        this.ociosas = ociosas;
+        this.aguardando = aguardando;
+        this.criadas = criadas;
+        this.destruidas = destruidas;
+        this.aquisicoes = aquisicoes;
+        this.timeouts = timeouts;
+        this.vazamentos = vazamentos;
+        this.tempoMedioAquisicaoMs = tempoMedioAquisicaoMs;
+        this.acertosStatements = acertosStatements;
+        this.faltasStatements = faltasStatements;
+    }
+
+    public int getTotal() { return total; }
+    public int getEmUso() { return emUso; }
+    public int getOciosas() { return ociosas; }
+    public int getAguardando() { return aguardando; }
+    public long getCriadas() { return criadas; }
+    public long getDestruidas() { return destruidas; }
+    public long getAquisicoes() { return aquisicoes; }
+    public long getTimeouts() { return timeouts; }
+    public long getVazamentos() { return vazamentos; }
+    public double getTempoMedioAquisicaoMs() { return tempoMedioAquisicaoMs; }
+    public long getAcertosStatements() { return acertosStatements; }
+    public long getFaltasStatements() { return faltasStatements; }
+
+    @Override
+    public String toString() {
+        return String.format("pool[total=%d, emUso=%d, ociosas=%d, aguardando=%d, criadas=%d, destruidas=%d, "
+                        + "aquisicoes=%d, timeouts=%d, vazamentos=%d, espera media=%.2fms, statements acertos=%d faltas=%d]",
+                total, emUso, ociosas, aguardando, criadas, destruidas, aquisicoes, timeouts, vazamentos,
+                tempoMedioAquisicaoMs, acertosStatements, faltasStatements);
+    }
+}
@@ -0,0 +1,485 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Pool de conexões limitado.
+ *
+ * Como funciona:
+ * 1) obter() entrega uma conexão ociosa (validada) ou abre uma nova enquanto total < máximo;
+ *    se o pool estiver cheio, espera até timeoutAquisicaoMs e então falha.
+ * 2) A conexão entregue é um proxy: close() devolve a conexão física ao pool em vez de fechá-la.
+ *    Statements e ResultSets dela também passam por proxy: falha de comunicação (SQLState 08)
+ *    em qualquer um deles marca a conexão física como quebrada e ela é descartada na devolução.
+ * 3) Uma tarefa de manutenção fecha ociosas além do mínimo, recicla as que passaram da vida máxima,
+ *    repõe o mínimo e avisa sobre conexões emprestadas há tempo demais (com a pilha de quem pegou).
+ */
+public class PoolConexoes {
+    private static final Logger LOG = Logger.getLogger(PoolConexoes.class.getName());
+    private static final long JANELA_SEM_VALIDACAO_MS = 500;
+
+    private final String url;
+    private final String usuario;
+    private final String senha;
+    private final ConfiguracaoPool config;
+
+    private final ReentrantLock trava = new ReentrantLock();
+    private final Condition liberada = trava.newCondition();
+    private final Deque<ConexaoFisica> ociosas = new ArrayDeque<>();
+    private final Set<ConexaoFisica> emUso = ConcurrentHashMap.newKeySet();
+    private int total;
+    private int aguardando;
+    private boolean fechado;
+
+    private final AtomicLong criadas = new AtomicLong();
+    private final AtomicLong destruidas = new AtomicLong();
+    private final AtomicLong aquisicoes = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong vazamentos = new AtomicLong();
+    private final AtomicLong nanosEspera = new AtomicLong();
+
+    private final ScheduledExecutorService manutencao;
+
+    public PoolConexoes(String url, String usuario, String senha, ConfiguracaoPool config) {
+        if (config.getTamanhoMaximo() < 1 || config.getTamanhoMinimo() > config.getTamanhoMaximo()) {
+            throw new IllegalArgumentException("Tamanhos de pool inválidos.");
+        }
+        this.url = url;
+        this.usuario = usuario;
+        this.senha = senha;
+        this.config = config;
+
+        this.manutencao = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-conexoes-manutencao");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalo = config.getIntervaloManutencaoMs();
+        manutencao.scheduleWithFixedDelay(this::manter, intervalo, intervalo, TimeUnit.MILLISECONDS);
+        preencherMinimo();
+    }
+
+    // ---------- Empréstimo / devolução ----------
+    public Connection obter() throws SQLException {
+        long inicio = System.nanoTime();
+        long prazo = inicio + TimeUnit.MILLISECONDS.toNanos(config.getTimeoutAquisicaoMs());
+
+        while (true) {
+            ConexaoFisica fisica = null;
+            boolean criar = false;
+
+            trava.lock();
+            try {
+                if (fechado) throw new SQLException("Pool de conexões fechado.");
+                while (ociosas.isEmpty() && total >= config.getTamanhoMaximo()) {
+                    long restante = prazo - System.nanoTime();
+                    if (restante <= 0) {
+                        timeouts.incrementAndGet();
+                        throw new SQLException("Tempo esgotado aguardando conexão do pool ("
+                                + config.getTimeoutAquisicaoMs() + " ms, " + total + " em uso).");
+                    }
+                    aguardando++;
+                    try {
+                        liberada.awaitNanos(restante);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrompido aguardando conexão do pool.", ie);
+                    } finally {
+                        aguardando--;
+                    }
+                    if (fechado) throw new SQLException("Pool de conexões fechado.");
+                }
+                if (!ociosas.isEmpty()) {
+                    fisica = ociosas.pollFirst();
+                } else {
+                    total++;
+                    criar = true;
+                }
+            } finally {
+                trava.unlock();
+            }
+
+            if (criar) {
+                try {
+                    fisica = abrir();
+                } catch (SQLException e) {
+                    descartarVaga();
+                    throw e;
+                }
+            } else if (!valida(fisica)) {
+                destruir(fisica);
+                continue;
+            }
+
+            fisica.marcarEmprestimo(config.getLimiteVazamentoMs() > 0);
+            emUso.add(fisica);
+            aquisicoes.incrementAndGet();
+            nanosEspera.addAndGet(System.nanoTime() - inicio);
+            return fisica.novoProxy();
+        }
+    }
+
+    void devolver(ConexaoFisica fisica) {
+        emUso.remove(fisica);
+        if (fisica.statements != null) fisica.statements.aoDevolverConexao();
+        boolean reutilizar = !fisica.quebrada && !expirada(fisica) && restaurar(fisica);
+
+        trava.lock();
+        try {
+            if (reutilizar && !fechado) {
+                fisica.ultimoUso = System.currentTimeMillis();
+                ociosas.addFirst(fisica); // LIFO: mantém as mais quentes em uso e deixa as frias expirarem
+                liberada.signal();
+                return;
+            }
+        } finally {
+            trava.unlock();
+        }
+        destruir(fisica);
+    }
+
+    // Desfaz qualquer transação esquecida antes de a conexão voltar para o pool
+    private boolean restaurar(ConexaoFisica fisica) {
+        try {
+            Connection c = fisica.conexao;
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            if (c.isReadOnly()) c.setReadOnly(false);
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean valida(ConexaoFisica fisica) {
+        if (expirada(fisica)) return false;
+        // Usada há pouco: o ping ao servidor só adicionaria latência
+        if (System.currentTimeMillis() - fisica.ultimoUso < JANELA_SEM_VALIDACAO_MS) return true;
+        try {
+            return fisica.conexao.isValid(config.getTimeoutValidacaoSeg());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean expirada(ConexaoFisica fisica) {
+        return System.currentTimeMillis() - fisica.criadaEm > config.getVidaMaximaMs();
+    }
+
+    private ConexaoFisica abrir() throws SQLException {
+        Connection c = DriverManager.getConnection(url, usuario, senha);
+        criadas.incrementAndGet();
+        return new ConexaoFisica(c);
+    }
+
+    private void destruir(ConexaoFisica fisica) {
+        try {
+            fisica.conexao.close();
+        } catch (SQLException ignorada) {
+            // a conexão já estava inutilizável
+        }
+        destruidas.incrementAndGet();
+        descartarVaga();
+    }
+
+    private void descartarVaga() {
+        trava.lock();
+        try {
+            total--;
+            liberada.signal();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // ---------- Manutenção ----------
+    private void manter() {
+        try {
+            removerOciosas();
+            preencherMinimo();
+            detectarVazamentos();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Falha na manutenção do pool", e);
+        }
+    }
+
+    private void removerOciosas() {
+        long agora = System.currentTimeMillis();
+        Deque<ConexaoFisica> remover = new ArrayDeque<>();
+        trava.lock();
+        try {
+            // As mais antigas ficam no fim da fila (LIFO)
+            Iterator<ConexaoFisica> it = ociosas.descendingIterator();
+            int restantes = total;
+            while (it.hasNext()) {
+                ConexaoFisica f = it.next();
+                boolean ociosaDemais = agora - f.ultimoUso > config.getTempoOciosoMaxMs()
+                        && restantes > config.getTamanhoMinimo();
+                if (ociosaDemais || expirada(f)) {
+                    it.remove();
+                    remover.add(f);
+                    restantes--;
+                }
+            }
+        } finally {
+            trava.unlock();
+        }
+        for (ConexaoFisica f : remover) destruir(f);
+    }
+
+    private void preencherMinimo() {
+        while (true) {
+            trava.lock();
+            try {
+                if (fechado || total >= config.getTamanhoMinimo()) return;
+                total++;
+            } finally {
+                trava.unlock();
+            }
+            try {
+                ConexaoFisica f = abrir();
+                devolverNova(f);
+            } catch (SQLException e) {
+                descartarVaga();
+                LOG.log(Level.WARNING, "Não foi possível abrir conexão mínima do pool: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void devolverNova(ConexaoFisica f) {
+        trava.lock();
+        try {
+            if (!fechado) {
+                ociosas.addLast(f);
+                liberada.signal();
+                return;
+            }
+        } finally {
+            trava.unlock();
+        }
+        destruir(f);
+    }
+
+    private void detectarVazamentos() {
+        long limite = config.getLimiteVazamentoMs();
+        if (limite <= 0) return;
+        long agora = System.currentTimeMillis();
+        for (ConexaoFisica f : emUso) {
+            if (!f.vazamentoReportado && agora - f.emprestadaEm > limite) {
+                f.vazamentoReportado = true;
+                vazamentos.incrementAndGet();
+                LOG.log(Level.WARNING, "Possível vazamento: conexão emprestada há "
+                        + (agora - f.emprestadaEm) + " ms sem ser fechada.", f.origem);
+            }
+        }
+    }
+
+    // ---------- Estatísticas / encerramento ----------
+    public EstatisticasPool estatisticas() {
+        trava.lock();
+        try {
+            long n = aquisicoes.get();
+            double media = n == 0 ? 0 : nanosEspera.get() / (double) n / 1_000_000.0;
+            return new EstatisticasPool(total, emUso.size(), ociosas.size(), aguardando, criadas.get(),
+                    destruidas.get(), n, timeouts.get(), vazamentos.get(), media,
+                    CacheStatements.ACERTOS.get(), CacheStatements.FALTAS.get());
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    public void fechar() {
+        Deque<ConexaoFisica> remover;
+        trava.lock();
+        try {
+            fechado = true;
+            remover = new ArrayDeque<>(ociosas);
+            ociosas.clear();
+            liberada.signalAll();
+        } finally {
+            trava.unlock();
+        }
+        manutencao.shutdownNow();
+        for (ConexaoFisica f : remover) destruir(f);
+        // As emprestadas são destruídas quando forem devolvidas
+    }
+
+    // ---------- Conexão física + proxy entregue ao DAO ----------
+    final class ConexaoFisica {
+        final Connection conexao;
+        final CacheStatements statements;
+        final long criadaEm = System.currentTimeMillis();
+        volatile long ultimoUso = criadaEm;
+        volatile long emprestadaEm;
+        volatile Throwable origem;
+        volatile boolean vazamentoReportado;
+        volatile boolean quebrada;
+
+        ConexaoFisica(Connection conexao) {
+            this.conexao = conexao;
+            int tamanho = config.getTamanhoCacheStatements();
+            this.statements = tamanho > 0 ? new CacheStatements(conexao, tamanho) : null;
+        }
+
+        void marcarEmprestimo(boolean capturarPilha) {
+            emprestadaEm = System.currentTimeMillis();
+            vazamentoReportado = false;
+            origem = capturarPilha ? new Throwable("Conexão obtida aqui") : null;
+        }
+
+        Connection novoProxy() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ConexaoEmprestada(this));
+        }
+    }
+
+    private final class ConexaoEmprestada implements InvocationHandler {
+        private final ConexaoFisica fisica;
+        private boolean devolvida;
+
+        ConexaoEmprestada(ConexaoFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devolvida) {
+                        devolvida = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return devolvida || fisica.conexao.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexaoPool[" + fisica.conexao + "]";
+                default:
+                    break;
+            }
+            if (devolvida) throw new SQLException("Conexão já devolvida ao pool.");
+            Connection dono = (Connection) proxy;
+            try {
+                if (method.getName().equals("unwrap") || method.getName().equals("isWrapperFor")) {
+                    return desembrulhar(proxy, method.getName().equals("unwrap"), (Class<?>) args[0]);
+                }
+                if (fisica.statements != null && method.getName().equals("prepareStatement")) {
+                    Class<?>[] tipos = method.getParameterTypes();
+                    if (tipos.length == 1) {
+                        return vigiar(fisica, dono, fisica.statements.preparar((String) args[0], dono), PreparedStatement.class);
+                    }
+                    if (tipos.length == 2 && tipos[1] == int.class) {
+                        return vigiar(fisica, dono, fisica.statements.preparar((String) args[0], (Integer) args[1], dono), PreparedStatement.class);
+                    }
+                }
+                return vigiar(fisica, dono, method.invoke(fisica.conexao, args), method.getReturnType());
+            } catch (InvocationTargetException e) {
+                throw marcarSeQuebrada(fisica, e.getCause());
+            } catch (SQLException e) {
+                throw marcarSeQuebrada(fisica, e); // prepareStatement pelo cache
+            }
+        }
+
+        /*
+         * unwrap/isWrapperFor: a conexão física nunca sai do pool (quem a fechasse ou a guardasse
+         * depois do close() estragaria a conexão do próximo). Interfaces do driver que não são
+         * Connection (ex.: para ler propriedades do servidor) continuam acessíveis.
+         */
+        private Object desembrulhar(Object proxy, boolean unwrap, Class<?> iface) throws SQLException {
+            if (iface.isInstance(proxy)) return unwrap ? iface.cast(proxy) : Boolean.TRUE;
+            if (!fisica.conexao.isWrapperFor(iface)) {
+                if (unwrap) throw new SQLException("Conexão do pool não embrulha " + iface.getName() + ".");
+                return Boolean.FALSE;
+            }
+            Object alvo = fisica.conexao.unwrap(iface);
+            if (alvo instanceof Connection) {
+                if (unwrap) throw new SQLException("O pool não entrega a conexão física (" + iface.getName() + ").");
+                return Boolean.FALSE;
+            }
+            return unwrap ? alvo : Boolean.TRUE;
+        }
+    }
+
+    // Classe 08 = falha de comunicação: a conexão não volta para o pool
+    private static Throwable marcarSeQuebrada(ConexaoFisica fisica, Throwable erro) {
+        if (erro instanceof SQLException) {
+            String estado = ((SQLException) erro).getSQLState();
+            if (estado != null && estado.startsWith("08")) fisica.quebrada = true;
+        }
+        return erro;
+    }
+
+    /*
+     * Statements e ResultSets saem embrulhados: a falha de comunicação costuma aparecer no
+     * execute*() ou no next(), não num método da Connection, e também precisa marcar a conexão.
+     */
+    private static Object vigiar(ConexaoFisica fisica, Connection dono, Object alvo, Class<?> tipo) {
+        if (alvo == null || !tipo.isInterface()
+                || !(Statement.class.isAssignableFrom(tipo) || ResultSet.class.isAssignableFrom(tipo))) {
+            return alvo;
+        }
+        return Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, new Vigia(fisica, dono, alvo));
+    }
+
+    private static final class Vigia implements InvocationHandler {
+        private final ConexaoFisica fisica;
+        private final Connection dono;
+        private final Object alvo;
+
+        Vigia(ConexaoFisica fisica, Connection dono, Object alvo) {
+            this.fisica = fisica;
+            this.dono = dono;
+            this.alvo = alvo;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return dono; // nunca a conexão física
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return vigiar(fisica, dono, method.invoke(alvo, args), method.getReturnType());
+            } catch (InvocationTargetException e) {
+                throw marcarSeQuebrada(fisica, e.getCause());
+            }
+        }
+    }
+}
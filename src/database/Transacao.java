@@ -0,0 +1,247 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Unidade de trabalho presa à thread.
+ *
+ * Transacao.executar(conn -> ...) abre UMA conexão do pool, desliga o autocommit e a deixa
+ * associada à thread. Enquanto ela estiver aberta:
+ * - Database.getConnection() devolve essa mesma conexão (qualquer DAO chamado lá dentro participa);
+ * - chamadas aninhadas de executar(...) reaproveitam a transação em vez de abrir outra;
+ * - commit(), rollback(), setAutoCommit() e close() feitos pelos participantes são ignorados:
+ *   quem decide é a transação mais externa (commit no fim, rollback se sair exceção).
+ *
+ * aposCommit(...) agenda ações (ex.: atualizar caches) para depois do commit.
+ *
+ * executarComRetentativa(metodo, ...) é o mesmo executar, mas refaz a transação inteira quando o
+ * banco a derruba por deadlock (SQLState 40001 / erro 1213) ou por espera de trava (erro 1205):
+ * espera exponencial com jitter, dentro de um orçamento de tempo, e contagem por método.
+ * O trabalho precisa poder rodar de novo do zero (nada de estado acumulado fora do lambda).
+ * A variante com Envolvente embrulha cada tentativa (ex.: uma trava em memória pega só durante a
+ * tentativa e solta durante a espera entre uma e outra).
+ */
+public final class Transacao {
+    private static final Logger LOG = Logger.getLogger(Transacao.class.getName());
+    private static final ThreadLocal<Contexto> ATUAL = new ThreadLocal<>();
+
+    private static final long ORCAMENTO_RETENTATIVA_MS = 2_000;
+    private static final long ESPERA_BASE_MS = 20;
+    private static final long ESPERA_MAXIMA_MS = 500;
+    private static final int ERRO_DEADLOCK = 1213;
+    private static final int ERRO_ESPERA_TRAVA = 1205;
+    private static final ConcurrentHashMap<String, LongAdder> RETENTATIVAS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LongAdder> ESGOTADAS = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface Trabalho<T> {
+        T executar(Connection conn) throws SQLException;
+    }
+
+    // Uma tentativa de executarComRetentativa (transação completa: abre, trabalha, commit)
+    @FunctionalInterface
+    public interface Tentativa<T> {
+        T executar() throws SQLException;
+    }
+
+    // Envolve cada tentativa; a espera entre tentativas fica de fora
+    public interface Envolvente {
+        <T> T executar(Tentativa<T> tentativa) throws SQLException;
+    }
+
+    private static final Envolvente DIRETO = new Envolvente() {
+        @Override
+        public <T> T executar(Tentativa<T> tentativa) throws SQLException {
+            return tentativa.executar();
+        }
+    };
+
+    private Transacao() {}
+
+    public static <T> T executar(Trabalho<T> trabalho) throws SQLException {
+        Contexto ctx = ATUAL.get();
+        if (ctx != null) {
+            return trabalho.executar(ctx.participante);
+        }
+
+        List<Runnable> aposCommit;
+        T resultado;
+        try (Connection conn = Database.obterDoPool()) {
+            conn.setAutoCommit(false);
+            ctx = new Contexto(conn);
+            ATUAL.set(ctx);
+            try {
+                resultado = trabalho.executar(ctx.participante);
+                conn.commit();
+            } catch (Throwable t) {
+                desfazer(conn, t);
+                throw t;
+            } finally {
+                ATUAL.remove();
+            }
+            aposCommit = ctx.aposCommit;
+        }
+
+        for (Runnable r : aposCommit) {
+            try {
+                r.run();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Falha em ação pós-commit", e);
+            }
+        }
+        return resultado;
+    }
+
+    public static <T> T executarComRetentativa(String metodo, Trabalho<T> trabalho) throws SQLException {
+        return executarComRetentativa(metodo, DIRETO, trabalho);
+    }
+
+    public static <T> T executarComRetentativa(String metodo, Envolvente envolvente, Trabalho<T> trabalho) throws SQLException {
+        // Aninhada: o deadlock desfaz a transação de fora, então só a de fora pode refazer
+        if (ATUAL.get() != null) return executar(trabalho);
+
+        long inicio = System.nanoTime();
+        for (int tentativa = 0; ; tentativa++) {
+            try {
+                return envolvente.executar(() -> executar(trabalho));
+            } catch (SQLException | RuntimeException e) {
+                if (!retentavel(e)) throw e;
+                long espera = ThreadLocalRandom.current().nextLong(
+                        Math.min(ESPERA_MAXIMA_MS, ESPERA_BASE_MS << Math.min(tentativa, 20)) + 1);
+                long gastoMs = (System.nanoTime() - inicio) / 1_000_000;
+                if (gastoMs + espera > ORCAMENTO_RETENTATIVA_MS) {
+                    ESGOTADAS.computeIfAbsent(metodo, k -> new LongAdder()).increment();
+                    throw e;
+                }
+                RETENTATIVAS.computeIfAbsent(metodo, k -> new LongAdder()).increment();
+                LOG.fine(() -> metodo + ": transação desfeita pelo banco (" + e.getMessage() + "), nova tentativa em " + espera + " ms");
+                try {
+                    Thread.sleep(espera);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Deadlock ou espera de trava em qualquer ponto da cadeia de causas (DAOs embrulham SQLException)
+    public static boolean retentavel(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof SQLException) {
+                SQLException s = (SQLException) c;
+                if ("40001".equals(s.getSQLState())
+                        || s.getErrorCode() == ERRO_DEADLOCK
+                        || s.getErrorCode() == ERRO_ESPERA_TRAVA) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // método -> transações refeitas
+    public static Map<String, Long> retentativasPorMetodo() {
+        return contagens(RETENTATIVAS);
+    }
+
+    // método -> vezes em que o orçamento acabou e o erro subiu para quem chamou
+    public static Map<String, Long> retentativasEsgotadasPorMetodo() {
+        return contagens(ESGOTADAS);
+    }
+
+    private static Map<String, Long> contagens(ConcurrentHashMap<String, LongAdder> mapa) {
+        Map<String, Long> copia = new TreeMap<>();
+        mapa.forEach((k, v) -> copia.put(k, v.sum()));
+        return copia;
+    }
+
+    public static boolean ativa() {
+        return ATUAL.get() != null;
+    }
+
+    // Conexão da transação corrente (já protegida contra commit/close dos participantes), ou null
+    public static Connection conexaoAtual() {
+        Contexto ctx = ATUAL.get();
+        return ctx == null ? null : ctx.participante;
+    }
+
+    // Fora de transação a ação roda na hora
+    public static void aposCommit(Runnable acao) {
+        Contexto ctx = ATUAL.get();
+        if (ctx == null) {
+            acao.run();
+        } else {
+            ctx.aposCommit.add(acao);
+        }
+    }
+
+    private static void desfazer(Connection conn, Throwable causa) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            causa.addSuppressed(e);
+        }
+    }
+
+    private static final class Contexto {
+        final Connection participante;
+        final List<Runnable> aposCommit = new ArrayList<>();
+
+        Contexto(Connection real) {
+            this.participante = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Participante(real));
+        }
+    }
+
+    private static final class Participante implements InvocationHandler {
+        private final Connection real;
+
+        Participante(Connection real) {
+            this.real = real;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            int nArgs = args == null ? 0 : args.length;
+            switch (method.getName()) {
+                case "close":
+                case "commit":
+                case "setAutoCommit":
+                    return null;
+                case "rollback":
+                    if (nArgs == 0) return null; // rollback(Savepoint) continua valendo
+                    break;
+                case "getAutoCommit":
+                    return false;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
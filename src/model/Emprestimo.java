@@ -8,6 +8,7 @@ public class Emprestimo {
     private int usuarioId;
     private LocalDate dataEmprestimo;
     private LocalDate dataDevolucao;
+    private LocalDate dataRetorno; // null enquanto o livro não foi devolvido
 
     public Emprestimo(int id, int livroId, int usuarioId, LocalDate dataEmprestimo, LocalDate dataDevolucao) { 
         //Contrutor
@@ -18,6 +19,11 @@ public class Emprestimo {
         this.dataDevolucao = dataDevolucao;
     }
 
+    public Emprestimo(int id, int livroId, int usuarioId, LocalDate dataEmprestimo, LocalDate dataDevolucao, LocalDate dataRetorno) {
+        this(id, livroId, usuarioId, dataEmprestimo, dataDevolucao);
+        this.dataRetorno = dataRetorno;
+    }
+
     // Getters e Setters -  Modificadores de acesso
     public int getId() { 
         return id; 
@@ -58,4 +64,16 @@ public class Emprestimo {
     public void setDataDevolucao(LocalDate dataDevolucao) { 
         this.dataDevolucao = dataDevolucao; 
     }
+
+    public LocalDate getDataRetorno() { 
+        return dataRetorno; 
+    }
+
+    public void setDataRetorno(LocalDate dataRetorno) { 
+        this.dataRetorno = dataRetorno; 
+    }
+
+    public boolean isAberto() { 
+        return dataRetorno == null; 
+    }
 }
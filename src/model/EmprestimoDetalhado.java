@@ -0,0 +1,57 @@
+package model;
+
+import java.time.LocalDate;
+
+// Empréstimo já com os dados do livro e do usuário (uma linha do JOIN), para as telas de listagem
+public class EmprestimoDetalhado {
+    private int id;
+    private int livroId;
+    private String tituloLivro;
+    private String autorLivro;
+    private int usuarioId;
+    private String nomeUsuario;
+    private String emailUsuario;
+    private LocalDate dataEmprestimo;
+    private LocalDate dataDevolucao;
+    private LocalDate dataRetorno;
+
+    public EmprestimoDetalhado(int id, int livroId, String tituloLivro, String autorLivro,
+                               int usuarioId, String nomeUsuario, String emailUsuario,
+                               LocalDate dataEmprestimo, LocalDate dataDevolucao, LocalDate dataRetorno) {
+        this.id = id;
+        this.livroId = livroId;
+        this.tituloLivro = tituloLivro;
+        this.autorLivro = autorLivro;
+        this.usuarioId = usuarioId;
+        this.nomeUsuario = nomeUsuario;
+        this.emailUsuario = emailUsuario;
+        this.dataEmprestimo = dataEmprestimo;
+        this.dataDevolucao = dataDevolucao;
+        this.dataRetorno = dataRetorno;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public int getLivroId() { return livroId; }
+    public String getTituloLivro() { return tituloLivro; }
+    public String getAutorLivro() { return autorLivro; }
+    public int getUsuarioId() { return usuarioId; }
+    public String getNomeUsuario() { return nomeUsuario; }
+    public String getEmailUsuario() { return emailUsuario; }
+    public LocalDate getDataEmprestimo() { return dataEmprestimo; }
+    public LocalDate getDataDevolucao() { return dataDevolucao; }
+    public LocalDate getDataRetorno() { return dataRetorno; }
+
+    public boolean isAberto() {
+        return dataRetorno == null;
+    }
+
+    public boolean isAtrasado() {
+        return isAberto() && dataDevolucao.isBefore(LocalDate.now());
+    }
+
+    @Override
+    public String toString() {
+        return tituloLivro + " - " + nomeUsuario + " (até " + dataDevolucao + ")";
+    }
+}
@@ -0,0 +1,43 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Uma linha de emprestimo_eventos: o que aconteceu com um empréstimo, gravado no mesmo commit da mudança
+public class EventoEmprestimo {
+
+    public enum Tipo { CRIADO, ALTERADO, DEVOLVIDO, REMOVIDO }
+
+    private long id;
+    private Tipo tipo;
+    private int emprestimoId;
+    private int livroId;
+    private int usuarioId;
+    private LocalDate dataDevolucao;
+    private LocalDateTime criadoEm;
+
+    public EventoEmprestimo(long id, Tipo tipo, int emprestimoId, int livroId, int usuarioId,
+                            LocalDate dataDevolucao, LocalDateTime criadoEm) {
+        this.id = id;
+        this.tipo = tipo;
+        this.emprestimoId = emprestimoId;
+        this.livroId = livroId;
+        this.usuarioId = usuarioId;
+        this.dataDevolucao = dataDevolucao;
+        this.criadoEm = criadoEm;
+    }
+
+    // Getters
+    public long getId() { return id; }
+    public Tipo getTipo() { return tipo; }
+    public int getEmprestimoId() { return emprestimoId; }
+    public int getLivroId() { return livroId; }
+    public int getUsuarioId() { return usuarioId; }
+    public LocalDate getDataDevolucao() { return dataDevolucao; }
+    public LocalDateTime getCriadoEm() { return criadoEm; }
+
+    @Override
+    public String toString() {
+        return "evento " + id + " " + tipo + " emprestimo=" + emprestimoId + " livro=" + livroId;
+    }
+}
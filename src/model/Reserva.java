@@ -0,0 +1,29 @@
+package model;
+
+import java.time.LocalDateTime;
+
+// Lugar de um usuário na fila de espera de um livro (primeiro a reservar, primeiro a receber)
+public class Reserva {
+    private int id;
+    private int livroId;
+    private int usuarioId;
+    private LocalDateTime criadaEm;
+
+    public Reserva(int id, int livroId, int usuarioId, LocalDateTime criadaEm) {
+        this.id = id;
+        this.livroId = livroId;
+        this.usuarioId = usuarioId;
+        this.criadaEm = criadaEm;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public int getLivroId() { return livroId; }
+    public int getUsuarioId() { return usuarioId; }
+    public LocalDateTime getCriadaEm() { return criadaEm; }
+
+    @Override
+    public String toString() {
+        return "Reserva " + id + " - livro " + livroId + " - usuário " + usuarioId;
+    }
+}